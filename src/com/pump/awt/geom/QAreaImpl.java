@@ -30,6 +30,10 @@ package com.pump.awt.geom;
 import java.awt.*;
 import java.awt.geom.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 public class QAreaImpl implements QArea<QAreaImpl> {
 
@@ -45,8 +49,26 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         }
     };
 
+    /**
+     * The curves of this area. This is null if the curves are packed.
+     */
     private ExposedArrayWrapper<QCurve> curves;
 
+    /**
+     * The curves of this area stored in primitive arrays, or null.
+     *
+     * @see #pack()
+     */
+    private QCurvePack packedCurves;
+
+    /**
+     * The curves of this area (excluding movetos) in the order the sweep
+     * sorts their edges in, or null if this hasn't been calculated yet.
+     *
+     * @see #getSortedCurves()
+     */
+    private QCurve[] sortedCurves;
+
     /**
      * Default constructor which creates an empty area.
      * @since 1.2
@@ -68,14 +90,257 @@ public class QAreaImpl implements QArea<QAreaImpl> {
     public QAreaImpl(Shape s) {
         if (s instanceof QAreaImpl) {
             curves = ((QAreaImpl) s).curves;
+            packedCurves = ((QAreaImpl) s).packedCurves;
+            sortedCurves = ((QAreaImpl) s).sortedCurves;
+            forkJoinPool = ((QAreaImpl) s).forkJoinPool;
+            splitAtCrossings = ((QAreaImpl) s).splitAtCrossings;
+            degreeReductionCount = ((QAreaImpl) s).degreeReductionCount;
+        } else {
+            int[] reductionCount = new int[1];
+            if (s instanceof Area) {
+                // an Area is already normalized the same way this class is
+                curves = readCurves(s.getPathIterator(null), ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY,
+                        reductionCount);
+            } else {
+                curves = pathToCurves(s.getPathIterator(null), ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY,
+                        isConvex(s), null, reductionCount);
+            }
+            degreeReductionCount = reductionCount[0];
+        }
+    }
+
+    /**
+     * Creates an area from a large shape, such as a path with hundreds of
+     * thousands of segments. This creates the same area as
+     * {@link #QAreaImpl(Shape)}, but:
+     * <ul>
+     * <li>The curves are stored in lists sized for estimatedSegmentCount,
+     * instead of lists that grow as the path is read.</li>
+     * <li>If pool is non-null (and it has more than one thread) and
+     * estimatedSegmentCount is large, then the segments are copied from the
+     * shape's PathIterator, and they are split into y-monotone curves on
+     * several threads. Smaller paths are read on the calling thread.</li>
+     * <li>The sweep that resolves the shape's winding rule also uses the
+     * pool (see {@link #setForkJoinPool(ForkJoinPool)}), and so do later
+     * operations on this area.</li>
+     * </ul>
+     * <p>
+     * The shape must not be modified while this constructor runs.
+     * </p>
+     * @param s the {@code Shape} from which the area is constructed
+     * @param estimatedSegmentCount the expected number of segments in the
+     *                              shape's path. This is only used to size
+     *                              lists and to decide whether to read the
+     *                              path on several threads, so it does not
+     *                              need to be exact.
+     * @param pool an optional pool used to read and sweep the path.
+     * @throws NullPointerException if {@code s} is null
+     */
+    public QAreaImpl(Shape s, int estimatedSegmentCount, ForkJoinPool pool) {
+        if (s instanceof QAreaImpl || s instanceof Area) {
+            QAreaImpl area = new QAreaImpl(s);
+            curves = area.curves;
+            packedCurves = area.packedCurves;
+            sortedCurves = area.sortedCurves;
+            splitAtCrossings = area.splitAtCrossings;
+            degreeReductionCount = area.degreeReductionCount;
         } else {
-            curves = pathToCurves(s.getPathIterator(null), ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY);
+            int[] reductionCount = new int[1];
+            curves = pathToCurves(s.getPathIterator(null), estimatedSegmentCount, isConvex(s), pool,
+                    reductionCount);
+            degreeReductionCount = reductionCount[0];
+        }
+        forkJoinPool = pool;
+    }
+
+    /**
+     * Return true if a shape is known to have a convex outline.
+     */
+    private static boolean isConvex(Shape s) {
+        return s instanceof Rectangle2D || s instanceof Ellipse2D ||
+                s instanceof RoundRectangle2D;
+    }
+
+    private QAreaImpl(ExposedArrayWrapper<QCurve> curves) {
+        this.curves = curves;
+    }
+
+    /**
+     * Creates an area from a path that is already normalized, such as the
+     * path of another {@code QAreaImpl} or a {@link java.awt.geom.Area}.
+     * <p>
+     * This only splits the path into y-monotone curves; it does not resolve
+     * overlapping or self-intersecting subpaths like the
+     * {@link #QAreaImpl(Shape)} constructor does. So the path must describe
+     * non-overlapping subpaths where each subpath travels down its left side
+     * and then up its right side, or the resulting area is undefined.
+     * </p>
+     * @param pi a path that {@code QAreaImpl} or {@code Area} created
+     *           (without a transform that rotates, shears or reflects it).
+     * @return a new area describing the path.
+     * @throws NullPointerException if {@code pi} is null
+     */
+    public static QAreaImpl fromNormalized(PathIterator pi) {
+        return new QAreaImpl(readCurves(pi));
+    }
+
+    /**
+     * Combines any number of areas in a single sweep. This is much faster than
+     * repeatedly calling {@link #add(QAreaImpl)} (or another operation) on an
+     * accumulating area, because each edge is only sorted and classified once.
+     * <pre>
+     *     // Example: the union of many areas
+     *     QAreaImpl union = QAreaImpl.combine(areas, QAreaOp.Classifier.ANY);
+     * </pre>
+     * None of the areas are modified.
+     * @param areas the areas to combine. The index of each area in this list
+     *              is the index the classifier receives.
+     * @param classifier decides whether a point is included in the result based
+     *                   on which of the areas contain that point.
+     * @return a new area that contains every point the classifier accepts.
+     * @throws NullPointerException if {@code areas}, any of its elements, or
+     *         {@code classifier} is null
+     */
+    public static QAreaImpl combine(List<QAreaImpl> areas, QAreaOp.Classifier classifier) {
+        Objects.requireNonNull(classifier);
+        List<ExposedArrayWrapper<QCurve>> operands = new ArrayList<>(areas.size());
+        for (QAreaImpl area : areas) {
+            operands.add(area.getCurves());
+        }
+        return new QAreaImpl(new QAreaOp.NaryOp(classifier, operands.size()).calculate(operands));
+    }
+
+    /**
+     * Creates the union of many shapes using a {@link ForkJoinPool}.
+     * <p>
+     * Each shape is converted to a {@code QAreaImpl} concurrently, and then
+     * the areas are added together pairwise in a balanced tree (instead of
+     * adding each shape to one growing area). This keeps intermediate areas
+     * small and lets independent unions run on separate threads.
+     * </p>
+     * <p>
+     * The shapes must not be modified while this method runs.
+     * </p>
+     * @param shapes the shapes to combine.
+     * @param pool the pool used to create and combine the areas.
+     * @return a new area representing the union of all the shapes.
+     * @throws NullPointerException if {@code shapes}, any of its elements, or
+     *         {@code pool} is null
+     */
+    public static QAreaImpl unionAll(Collection<? extends Shape> shapes, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        Shape[] array = shapes.toArray(new Shape[0]);
+        if (array.length == 0) {
+            return new QAreaImpl();
+        }
+        return pool.invoke(new UnionTask(array, 0, array.length));
+    }
+
+    /**
+     * This creates the union of shapes[start, end).
+     */
+    private static class UnionTask extends RecursiveTask<QAreaImpl> {
+        private static final long serialVersionUID = 1;
+
+        private final Shape[] shapes;
+        private final int start, end;
+
+        UnionTask(Shape[] shapes, int start, int end) {
+            this.shapes = shapes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected QAreaImpl compute() {
+            if (end - start == 1) {
+                return new QAreaImpl(shapes[start]);
+            }
+            int mid = (start + end) >>> 1;
+            UnionTask top = new UnionTask(shapes, start, mid);
+            top.fork();
+            QAreaImpl bottom = new UnionTask(shapes, mid, end).compute();
+            QAreaImpl sum = top.join();
+            sum.add(bottom);
+            return sum;
         }
     }
 
-    private static ExposedArrayWrapper<QCurve> pathToCurves(PathIterator pi, int estimatedCurveCount) {
-        ExposedArrayWrapper<QCurve> curves = new ExposedArrayWrapper<>(QCurve.class);
+    /**
+     * @param isConvex true if the path is known to be a convex outline
+     *                 (such as the outline of an Ellipse2D). If this is
+     *                 false then a single subpath can still skip the
+     *                 winding sweep if it is a simple polygon.
+     * @param pool an optional pool used to split the path into curves and
+     *             to sweep them (see {@link QPathSnapshot}).
+     * @param reductionCount an optional array whose first element is
+     *                       incremented for every quadratic or cubic segment
+     *                       that is stored as a lower degree curve.
+     */
+    private static ExposedArrayWrapper<QCurve> pathToCurves(PathIterator pi, int estimatedCurveCount,
+                                                            boolean isConvex, ForkJoinPool pool,
+                                                            int[] reductionCount) {
         int windingRule = pi.getWindingRule();
+        ExposedArrayWrapper<QCurve> curves;
+        if (QPathSnapshot.isParallel(estimatedCurveCount, pool)) {
+            curves = QPathSnapshot.create(pi, estimatedCurveCount).readCurves(pool, reductionCount);
+        } else {
+            curves = readCurves(pi, estimatedCurveCount, reductionCount);
+        }
+        ExposedArrayWrapper<QCurve> monotoneCurves = getMonotoneCurves(curves, isConvex);
+        if (monotoneCurves != null) {
+            return monotoneCurves;
+        }
+        QAreaOp operator;
+        if (windingRule == PathIterator.WIND_EVEN_ODD) {
+            operator = new QAreaOp.EOWindOp();
+        } else {
+            operator = new QAreaOp.NZWindOp();
+        }
+        operator.setForkJoinPool(pool);
+        return operator.calculate(curves, new ExposedArrayWrapper<>(QCurve.class));
+    }
+
+    /**
+     * Return a PathIterator that traces a list of subpaths.
+     *
+     * @param at an optional transform applied to every point.
+     */
+    static PathIterator getPathIterator(ExposedArrayWrapper<QCurve> curves, AffineTransform at) {
+        return new QAreaIterator(curves, at);
+    }
+
+    /**
+     * Split a path into y-monotone curves (without resolving its winding).
+     * Every subpath begins with a QOrder0, and horizontal segments are omitted.
+     */
+    static ExposedArrayWrapper<QCurve> readCurves(PathIterator pi) {
+        return readCurves(pi, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Split a path into y-monotone curves (without resolving its winding).
+     *
+     * @param estimatedCurveCount the expected number of curves. This is
+     *                            only used to size the list of curves.
+     */
+    static ExposedArrayWrapper<QCurve> readCurves(PathIterator pi, int estimatedCurveCount) {
+        return readCurves(pi, estimatedCurveCount, null);
+    }
+
+    /**
+     * Split a path into y-monotone curves (without resolving its winding).
+     *
+     * @param estimatedCurveCount the expected number of curves. This is
+     *                            only used to size the list of curves.
+     * @param reductionCount an optional array whose first element is
+     *                       incremented for every quadratic or cubic segment
+     *                       that is stored as a lower degree curve.
+     */
+    static ExposedArrayWrapper<QCurve> readCurves(PathIterator pi, int estimatedCurveCount, int[] reductionCount) {
+        int reductions = 0;
+        ExposedArrayWrapper<QCurve> curves = new ExposedArrayWrapper<>(QCurve.class,
+                Math.max(estimatedCurveCount, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY));
         // coords array is big enough for holding:
         //     coordinates returned from currentSegment (6)
         //     OR
@@ -112,14 +377,18 @@ public class QAreaImpl implements QArea<QAreaImpl> {
                 case PathIterator.SEG_QUADTO:
                     newx = coords[2];
                     newy = coords[3];
-                    QCurve.insertQuad(curves, curx, cury, coords);
+                    if (QCurve.insertQuad(curves, curx, cury, coords)) {
+                        reductions++;
+                    }
                     curx = newx;
                     cury = newy;
                     break;
                 case PathIterator.SEG_CUBICTO:
                     newx = coords[4];
                     newy = coords[5];
-                    QCurve.insertCubic(curves, curx, cury, coords);
+                    if (QCurve.insertCubic(curves, curx, cury, coords)) {
+                        reductions++;
+                    }
                     curx = newx;
                     cury = newy;
                     break;
@@ -132,13 +401,137 @@ public class QAreaImpl implements QArea<QAreaImpl> {
             pi.next();
         }
         QCurve.insertLine(curves, curx, cury, movx, movy);
-        QAreaOp operator;
-        if (windingRule == PathIterator.WIND_EVEN_ODD) {
-            operator = new QAreaOp.EOWindOp();
+        if (reductionCount != null) {
+            reductionCount[0] += reductions;
+        }
+        return curves;
+    }
+
+    /**
+     * If the curves describe one subpath that only descends once and
+     * ascends once (such as a convex shape), then return the curves the
+     * winding sweep would produce. Otherwise return null.
+     * <p>
+     * This requires the left side of the subpath to be strictly left of the
+     * right side at every vertex. For line segments that proves the subpath
+     * is simple, but curves can bulge between their vertices, so curves are
+     * only accepted if the caller knows the subpath is convex.
+     * </p>
+     *
+     * @param curves the y-monotone pieces of a path, in the order
+     *               they are traversed.
+     */
+    private static ExposedArrayWrapper<QCurve> getMonotoneCurves(ExposedArrayWrapper<QCurve> curves,
+                                                                 boolean isConvex) {
+        int size = curves.elementCount;
+        if (size < 3 || curves.elementData[0].order != 0) {
+            return null;
+        }
+        int descentStart = -1;
+        int directionChanges = 0;
+        for (int a = 1; a < size; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.order == 0 || (c.order > 1 && !isConvex)) {
+                return null;
+            }
+            QCurve prev = curves.elementData[a == 1 ? size - 1 : a - 1];
+            if (c.isIncreasingT != prev.isIncreasingT) {
+                directionChanges++;
+                if (c.isIncreasingT) {
+                    descentStart = a;
+                }
+            }
+        }
+        if (directionChanges != 2) {
+            return null;
+        }
+
+        // list both sides from top to bottom
+        int pieceCount = size - 1;
+        int descentLength = 0;
+        while (curves.elementData[1 + (descentStart - 1 + descentLength) % pieceCount].isIncreasingT) {
+            descentLength++;
+        }
+        QCurve[] descent = new QCurve[descentLength];
+        QCurve[] ascent = new QCurve[pieceCount - descentLength];
+        for (int a = 0; a < pieceCount; a++) {
+            QCurve c = curves.elementData[1 + (descentStart - 1 + a) % pieceCount];
+            if (a < descentLength) {
+                descent[a] = c;
+            } else {
+                ascent[ascent.length - 1 - (a - descentLength)] = c;
+            }
+        }
+
+        double top = descent[0].y0;
+        double bottom = descent[descent.length - 1].y1;
+        if (ascent[0].y0 != top || ascent[ascent.length - 1].y1 != bottom) {
+            return null;
+        }
+        double y = (top + Math.min(descent[0].y1, ascent[0].y1)) / 2;
+        double descentX = descent[0].XforY(y);
+        double ascentX = ascent[0].XforY(y);
+        QCurve[] left, right;
+        if (descentX < ascentX) {
+            left = descent;
+            right = ascent;
+        } else if (ascentX < descentX) {
+            left = ascent;
+            right = descent;
         } else {
-            operator = new QAreaOp.NZWindOp();
+            return null;
         }
-        return operator.calculate(curves, new ExposedArrayWrapper<>(QCurve.class));
+        if (!isLeftOf(left, right)) {
+            return null;
+        }
+
+        // the left side descends and the right side ascends, just like
+        // every subpath the sweep produces
+        ExposedArrayWrapper<QCurve> monotoneCurves = new ExposedArrayWrapper<>(QCurve.class, size);
+        monotoneCurves.add(new QOrder0(left[0].x0, left[0].y0));
+        for (QCurve c : left) {
+            monotoneCurves.add(c.getWithDirection(true));
+        }
+        for (int a = right.length - 1; a >= 0; a--) {
+            monotoneCurves.add(right[a].getWithDirection(false));
+        }
+        return monotoneCurves;
+    }
+
+    /**
+     * Return true if the left side of a subpath is never right of the right
+     * side at the top and bottom, and it is strictly left of the right side
+     * at every vertex in between.
+     *
+     * @param left the curves of the left side, from top to bottom.
+     * @param right the curves of the right side, from top to bottom.
+     */
+    private static boolean isLeftOf(QCurve[] left, QCurve[] right) {
+        if (!(left[0].x0 <= right[0].x0 &&
+                left[left.length - 1].x1 <= right[right.length - 1].x1)) {
+            return false;
+        }
+        int j = 0;
+        for (int i = 0; i < left.length - 1; i++) {
+            double y = left[i].y1;
+            while (right[j].y1 < y) {
+                j++;
+            }
+            if (!(left[i].x1 < right[j].XforY(y))) {
+                return false;
+            }
+        }
+        int i = 0;
+        for (j = 0; j < right.length - 1; j++) {
+            double y = right[j].y1;
+            while (left[i].y1 < y) {
+                i++;
+            }
+            if (!(left[i].XforY(y) < right[j].x1)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -171,7 +564,22 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public void add(QAreaImpl rhs) {
-        curves = new QAreaOp.AddOp().calculate(this.curves, rhs.curves);
+        if (rhs.isEmpty()) {
+            return;
+        }
+        if (isEmpty()) {
+            curves = rhs.curves;
+            packedCurves = rhs.packedCurves;
+            sortedCurves = rhs.sortedCurves;
+            invalidateBounds();
+            return;
+        }
+        if (isDisjoint(this, rhs, false)) {
+            concatenate(rhs);
+            return;
+        }
+        setCurves(createOp(new QAreaOp.AddOp()).calculate(getCurves(), this::getSortedCurves,
+                rhs.getCurves(), rhs::getSortedCurves));
         invalidateBounds();
     }
 
@@ -205,7 +613,11 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public void subtract(QAreaImpl rhs) {
-        curves = new QAreaOp.SubOp().calculate(this.curves, rhs.curves);
+        if (isEmpty() || rhs.isEmpty() || isDisjoint(this, rhs, true)) {
+            return;
+        }
+        setCurves(createOp(new QAreaOp.SubOp()).calculate(getCurves(), this::getSortedCurves,
+                rhs.getCurves(), rhs::getSortedCurves));
         invalidateBounds();
     }
 
@@ -239,7 +651,15 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public void intersect(QAreaImpl rhs) {
-        curves = new QAreaOp.IntOp().calculate(this.curves, rhs.curves);
+        if (isEmpty()) {
+            return;
+        }
+        if (rhs.isEmpty() || isDisjoint(this, rhs, true)) {
+            reset();
+            return;
+        }
+        setCurves(createOp(new QAreaOp.IntOp()).calculate(getCurves(), this::getSortedCurves,
+                rhs.getCurves(), rhs::getSortedCurves));
         invalidateBounds();
     }
 
@@ -274,10 +694,215 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public void exclusiveOr(QAreaImpl rhs) {
-        curves = new QAreaOp.XorOp().calculate(this.curves, rhs.curves);
+        if (rhs.isEmpty()) {
+            return;
+        }
+        if (isEmpty()) {
+            curves = rhs.curves;
+            packedCurves = rhs.packedCurves;
+            sortedCurves = rhs.sortedCurves;
+            invalidateBounds();
+            return;
+        }
+        if (isDisjoint(this, rhs, false)) {
+            concatenate(rhs);
+            return;
+        }
+        setCurves(createOp(new QAreaOp.XorOp()).calculate(getCurves(), this::getSortedCurves,
+                rhs.getCurves(), rhs::getSortedCurves));
         invalidateBounds();
     }
 
+    /**
+     * Adds the shape of the specified {@code Shape} to the shape of this
+     * {@code Area}. This is equivalent to {@code add(new QAreaImpl(shape))},
+     * except the shape's winding rule is resolved in the same sweep that
+     * adds it to this area, so the shape doesn't need a sweep of its own.
+     *
+     * @param shape the {@code Shape} to be added to the current shape
+     * @throws NullPointerException if {@code shape} is null
+     * @see #add(QAreaImpl)
+     */
+    public void add(Shape shape) {
+        combine(shape, new QAreaOp.AddOp(), this::add);
+    }
+
+    /**
+     * Subtracts the shape of the specified {@code Shape} from the shape of
+     * this {@code Area}. This is equivalent to
+     * {@code subtract(new QAreaImpl(shape))}, except the shape's winding
+     * rule is resolved in the same sweep that subtracts it from this area.
+     *
+     * @param shape the {@code Shape} to be subtracted from the current shape
+     * @throws NullPointerException if {@code shape} is null
+     * @see #subtract(QAreaImpl)
+     */
+    public void subtract(Shape shape) {
+        combine(shape, new QAreaOp.SubOp(), this::subtract);
+    }
+
+    /**
+     * Sets the shape of this {@code Area} to the intersection of its
+     * current shape and the specified {@code Shape}. This is equivalent to
+     * {@code intersect(new QAreaImpl(shape))}, except the shape's winding
+     * rule is resolved in the same sweep that intersects it with this area.
+     *
+     * @param shape the {@code Shape} to be intersected with this {@code Area}
+     * @throws NullPointerException if {@code shape} is null
+     * @see #intersect(QAreaImpl)
+     */
+    public void intersect(Shape shape) {
+        combine(shape, new QAreaOp.IntOp(), this::intersect);
+    }
+
+    /**
+     * Sets the shape of this {@code Area} to the exclusive or of its
+     * current shape and the specified {@code Shape}. This is equivalent to
+     * {@code exclusiveOr(new QAreaImpl(shape))}, except the shape's winding
+     * rule is resolved in the same sweep that combines it with this area.
+     *
+     * @param shape the {@code Shape} to be exclusive ORed with this {@code Area}
+     * @throws NullPointerException if {@code shape} is null
+     * @see #exclusiveOr(QAreaImpl)
+     */
+    public void exclusiveOr(Shape shape) {
+        combine(shape, new QAreaOp.XorOp(), this::exclusiveOr);
+    }
+
+    /**
+     * Combine this area with a shape that may not be normalized.
+     * <p>
+     * If the shape is already normalized (or it can be normalized without
+     * a sweep) then it is passed to areaOp as a QAreaImpl, so areaOp can
+     * use its shortcuts for disjoint areas. Otherwise the curves of the
+     * shape's path are the right operand of op, which resolves their
+     * winding rule while it combines them with this area.
+     * </p>
+     */
+    private void combine(Shape shape, QAreaOp.CAGOp op, Consumer<QAreaImpl> areaOp) {
+        Objects.requireNonNull(shape, "shape must not be null");
+        if (shape instanceof QAreaImpl || shape instanceof Area) {
+            areaOp.accept(new QAreaImpl(shape));
+            return;
+        }
+        Rectangle2D shapeBounds = shape.getBounds2D();
+        boolean isDisjoint = isEmpty() || isDisjoint(getCachedBounds(), shapeBounds, false);
+        if (isDisjoint && !op.newClassification(false, true)) {
+            // the parts of the shape outside of this area don't matter
+            areaOp.accept(new QAreaImpl());
+            return;
+        }
+        PathIterator pi = shape.getPathIterator(null);
+        int windingRule = pi.getWindingRule();
+        ExposedArrayWrapper<QCurve> path = readCurves(pi);
+        ExposedArrayWrapper<QCurve> monotoneCurves = getMonotoneCurves(path, isConvex(shape));
+        if (monotoneCurves != null) {
+            areaOp.accept(new QAreaImpl(monotoneCurves));
+            return;
+        }
+        if (isDisjoint) {
+            // areaOp appends a disjoint shape without a second sweep
+            QAreaOp windOp = windingRule == PathIterator.WIND_EVEN_ODD ?
+                    new QAreaOp.EOWindOp() : new QAreaOp.NZWindOp();
+            areaOp.accept(new QAreaImpl(createOp(windOp).calculate(path, new ExposedArrayWrapper<>(QCurve.class))));
+            return;
+        }
+        op.setRightWindingRule(windingRule);
+        setCurves(createOp(op).calculate(getCurves(), path));
+        invalidateBounds();
+    }
+
+    /**
+     * Return true if two nonempty areas do not overlap.
+     * <p>
+     * This first compares the bounds of both areas. If the bounds overlap
+     * then this compares the vertical extent of each area's subpaths, so
+     * areas that are interleaved horizontally (like alternating rows of
+     * tiles) can still be identified as disjoint.
+     * </p>
+     *
+     * @param allowTouching if true then areas that share a boundary
+     *        are considered disjoint. This is safe for subtraction and
+     *        intersection, but a union of two areas that share an edge
+     *        needs to merge that edge.
+     */
+    private static boolean isDisjoint(QAreaImpl a, QAreaImpl b, boolean allowTouching) {
+        if (isDisjoint(a.getCachedBounds(), b.getCachedBounds(), allowTouching)) {
+            return true;
+        }
+
+        double[] bands1 = a.getCachedYBands();
+        double[] bands2 = b.getCachedYBands();
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < bands1.length && i2 < bands2.length) {
+            double top1 = bands1[i1];
+            double bottom1 = bands1[i1 + 1];
+            double top2 = bands2[i2];
+            double bottom2 = bands2[i2 + 1];
+            boolean overlap = allowTouching ?
+                    top1 < bottom2 && top2 < bottom1 :
+                    top1 <= bottom2 && top2 <= bottom1;
+            if (overlap) {
+                return false;
+            }
+            if (bottom1 < bottom2) {
+                i1 += 2;
+            } else {
+                i2 += 2;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true if two rectangles do not overlap.
+     *
+     * @param allowTouching if true then rectangles that share an edge
+     *        are considered disjoint.
+     */
+    private static boolean isDisjoint(Rectangle2D r1, Rectangle2D r2, boolean allowTouching) {
+        if (allowTouching) {
+            return r1.getMaxX() <= r2.getMinX() || r2.getMaxX() <= r1.getMinX() ||
+                    r1.getMaxY() <= r2.getMinY() || r2.getMaxY() <= r1.getMinY();
+        }
+        return r1.getMaxX() < r2.getMinX() || r2.getMaxX() < r1.getMinX() ||
+                r1.getMaxY() < r2.getMinY() || r2.getMaxY() < r1.getMinY();
+    }
+
+    /**
+     * Append the subpaths of an area that is disjoint from this area.
+     * The subpaths of the area with the lower minimum y value come first.
+     */
+    private void concatenate(QAreaImpl rhs) {
+        Rectangle2D r1 = getCachedBounds();
+        Rectangle2D r2 = rhs.getCachedBounds();
+        ExposedArrayWrapper<QCurve> first = getCurves();
+        ExposedArrayWrapper<QCurve> second = rhs.getCurves();
+        QCurve[] firstSorted = sortedCurves;
+        QCurve[] secondSorted = rhs.sortedCurves;
+        if (r2.getMinY() < r1.getMinY()) {
+            first = rhs.getCurves();
+            second = getCurves();
+            firstSorted = rhs.sortedCurves;
+            secondSorted = sortedCurves;
+        }
+        ExposedArrayWrapper<QCurve> sum = new ExposedArrayWrapper<>(QCurve.class,
+                first.elementCount + second.elementCount);
+        System.arraycopy(first.elementData, 0, sum.elementData, 0, first.elementCount);
+        System.arraycopy(second.elementData, 0, sum.elementData, first.elementCount, second.elementCount);
+        sum.elementCount = first.elementCount + second.elementCount;
+
+        Rectangle2D bounds = r1.createUnion(r2);
+        double[] bands = mergeYBands(getCachedYBands(), rhs.getCachedYBands());
+        setCurves(sum);
+        if (firstSorted != null && secondSorted != null) {
+            sortedCurves = QEdgeSort.merge(firstSorted, secondSorted);
+        }
+        cachedBounds = bounds;
+        cachedYBands = bands;
+    }
+
     /**
      * Removes all of the geometry from this {@code Area} and
      * restores it to an empty area.
@@ -285,7 +910,7 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public void reset() {
-        curves = new ExposedArrayWrapper<>(QCurve.class);
+        setCurves(new ExposedArrayWrapper<>(QCurve.class));
         invalidateBounds();
     }
 
@@ -297,9 +922,105 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public boolean isEmpty() {
+        if (packedCurves != null) {
+            return packedCurves.size() == 0;
+        }
         return (curves.elementCount == 0);
     }
 
+    /**
+     * Store this area's curves in primitive arrays instead of separate
+     * curve objects. This uses a fraction of the memory, which is useful
+     * when many areas are retained but rarely modified.
+     * <p>
+     * A packed area can still be iterated, transformed (by transforms that
+     * only scale and translate), tested with {@code contains(x, y)} and
+     * measured without creating curve objects. Other queries (such as
+     * {@link #isRectangular()}, {@link #contains(Rectangle2D)},
+     * {@link #intersects(Rectangle2D)} and {@link #isEqual(QAreaImpl)})
+     * create temporary curve objects, and this area stays packed. Any
+     * operation that modifies this area (such as {@link #add(QAreaImpl)}),
+     * or that uses this area as its argument, recreates the curve objects
+     * and unpacks this area.
+     * </p>
+     *
+     * @see #isPacked()
+     */
+    public void pack() {
+        if (packedCurves == null) {
+            // the bounds are cheaper to calculate from curve objects
+            getCachedBounds();
+            packedCurves = QCurvePack.create(curves);
+            curves = null;
+            sortedCurves = null;
+        }
+    }
+
+    /**
+     * Merge consecutive collinear lines of this area into one line. The
+     * shape of this area does not change (except for rounding errors
+     * between the vertices, see {@link QAreaOp#setCompactResult(boolean)}).
+     * <p>
+     * Operations already do this to their results, so this is only useful
+     * for areas created from paths that have these lines (such as a
+     * polygon with collinear edges).
+     * </p>
+     */
+    public void compact() {
+        ExposedArrayWrapper<QCurve> compacted = QCurveMerge.compact(getCurves());
+        if (compacted != curves) {
+            setCurves(compacted);
+        }
+    }
+
+    /**
+     * Return true if this area's curves are stored in primitive arrays.
+     *
+     * @see #pack()
+     */
+    public boolean isPacked() {
+        return packedCurves != null;
+    }
+
+    /**
+     * Return the curves of this area, unpacking them if necessary.
+     */
+    private ExposedArrayWrapper<QCurve> getCurves() {
+        if (curves == null) {
+            curves = packedCurves.toCurves();
+            packedCurves = null;
+        }
+        return curves;
+    }
+
+    /**
+     * Return the curves of this area without unpacking them. If this area
+     * is packed then this returns a temporary copy of its curves.
+     */
+    private ExposedArrayWrapper<QCurve> getCurvesWithoutUnpacking() {
+        return curves != null ? curves : packedCurves.toCurves();
+    }
+
+    private void setCurves(ExposedArrayWrapper<QCurve> curves) {
+        this.curves = curves;
+        packedCurves = null;
+        sortedCurves = null;
+    }
+
+    /**
+     * Return the curves of this area (excluding movetos) sorted the way the
+     * sweep sorts their edges. This is calculated once and reused until the
+     * curves change, so an area that is an operand of several operations
+     * only has its curves sorted once, and the sweep merges the sorted
+     * curves of both operands instead of sorting all of their edges.
+     */
+    QCurve[] getSortedCurves() {
+        if (sortedCurves == null) {
+            sortedCurves = QEdgeSort.sortCurves(getCurves());
+        }
+        return sortedCurves;
+    }
+
     /**
      * Tests whether this {@code Area} consists entirely of
      * straight edged polygonal geometry.
@@ -310,6 +1031,9 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public boolean isPolygonal() {
+        if (packedCurves != null) {
+            return packedCurves.isPolygonal();
+        }
         for (int a = 0; a<curves.elementCount; a++) {
             if (curves.elementData[a].order > 1) {
                 return false;
@@ -327,6 +1051,10 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public boolean isRectangular() {
+        if (packedCurves != null && packedCurves.size() > 3) {
+            return false;
+        }
+        ExposedArrayWrapper<QCurve> curves = getCurvesWithoutUnpacking();
         int size = curves.elementCount;
         if (size == 0) {
             return true;
@@ -362,6 +1090,9 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public boolean isSingular() {
+        if (packedCurves != null) {
+            return packedCurves.getSubpathCount() <= 1;
+        }
         if (curves.elementCount < 3) {
             return true;
         }
@@ -373,14 +1104,156 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         return true;
     }
 
+    private int degreeReductionCount;
+
+    /**
+     * Return the number of quadratic and cubic segments of the shape this
+     * area was constructed from that are stored as lower degree curves
+     * (see {@link QCurve#DEGREE_REDUCTION_TOLERANCE}). This is zero for an
+     * area that was not constructed from a shape, and later operations on
+     * this area do not change it.
+     */
+    public int getDegreeReductionCount() {
+        return degreeReductionCount;
+    }
+
+    private ForkJoinPool forkJoinPool;
+
+    /**
+     * Assign a pool that operations on this area use to sweep large sets
+     * of edges in parallel. If this is null (the default) then every
+     * operation runs on the calling thread.
+     * <p>
+     * Parallel sweeps only apply to operations with thousands of edges.
+     * The result is the same as the result of a sequential sweep.
+     * </p>
+     *
+     * @see QAreaOp#setForkJoinPool(ForkJoinPool)
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        forkJoinPool = pool;
+    }
+
+    /**
+     * Return the pool operations on this area use to sweep large sets of
+     * edges in parallel, or null.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    private boolean splitAtCrossings;
+
+    /**
+     * Control whether operations on this area find every crossing of their
+     * edges before they sweep the edges. This is usually faster for shapes
+     * with many overlapping curves, and slower for shapes with few crossings.
+     * The default is false.
+     *
+     * @see QAreaOp#setSplitAtCrossings(boolean)
+     */
+    public void setSplitAtCrossings(boolean b) {
+        splitAtCrossings = b;
+    }
+
+    /**
+     * Return true if operations on this area find every crossing of their
+     * edges before they sweep the edges.
+     */
+    public boolean isSplitAtCrossings() {
+        return splitAtCrossings;
+    }
+
+    private QAreaOp createOp(QAreaOp op) {
+        op.setForkJoinPool(forkJoinPool);
+        op.setSplitAtCrossings(splitAtCrossings);
+        return op;
+    }
+
     private Rectangle2D cachedBounds;
+
+    /**
+     * Sorted pairs of (top, bottom) values that describe the vertical
+     * extent of all the subpaths in this area. Overlapping subpaths are
+     * merged into one band.
+     */
+    private double[] cachedYBands;
+
     private void invalidateBounds() {
         cachedBounds = null;
+        cachedYBands = null;
+    }
+
+    private double[] getCachedYBands() {
+        if (cachedYBands != null) {
+            return cachedYBands;
+        }
+        ExposedArrayWrapper<QCurve> curves = getCurves();
+        int subpathCount = 0;
+        for (int i = 0; i < curves.elementCount; i++) {
+            if (curves.elementData[i].order == 0) {
+                subpathCount++;
+            }
+        }
+        double[][] ranges = new double[subpathCount][];
+        int k = -1;
+        for (int i = 0; i < curves.elementCount; i++) {
+            QCurve c = curves.elementData[i];
+            if (c.order == 0) {
+                ranges[++k] = new double[] { c.y0, c.y0 };
+            } else {
+                ranges[k][0] = Math.min(ranges[k][0], c.y0);
+                ranges[k][1] = Math.max(ranges[k][1], c.y1);
+            }
+        }
+        Arrays.sort(ranges, (r1, r2) -> Double.compare(r1[0], r2[0]));
+
+        double[] bands = new double[2 * subpathCount];
+        int size = 0;
+        for (double[] range : ranges) {
+            if (size > 0 && range[0] <= bands[size - 1]) {
+                bands[size - 1] = Math.max(bands[size - 1], range[1]);
+            } else {
+                bands[size++] = range[0];
+                bands[size++] = range[1];
+            }
+        }
+        return (cachedYBands = Arrays.copyOf(bands, size));
+    }
+
+    /**
+     * Merge two sorted arrays of y-bands.
+     */
+    private static double[] mergeYBands(double[] bands1, double[] bands2) {
+        double[] bands = new double[bands1.length + bands2.length];
+        int i1 = 0;
+        int i2 = 0;
+        int size = 0;
+        while (i1 < bands1.length || i2 < bands2.length) {
+            double top, bottom;
+            if (i2 == bands2.length || (i1 < bands1.length && bands1[i1] <= bands2[i2])) {
+                top = bands1[i1++];
+                bottom = bands1[i1++];
+            } else {
+                top = bands2[i2++];
+                bottom = bands2[i2++];
+            }
+            if (size > 0 && top <= bands[size - 1]) {
+                bands[size - 1] = Math.max(bands[size - 1], bottom);
+            } else {
+                bands[size++] = top;
+                bands[size++] = bottom;
+            }
+        }
+        return size == bands.length ? bands : Arrays.copyOf(bands, size);
     }
     private Rectangle2D getCachedBounds() {
         if (cachedBounds != null) {
             return cachedBounds;
         }
+        if (packedCurves != null) {
+            return (cachedBounds = packedCurves.getBounds());
+        }
         Rectangle2D r = new Rectangle2D.Double();
         if (curves.elementCount > 0) {
             QCurve c = curves.elementData[0];
@@ -463,7 +1336,15 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         if (other == null) {
             return false;
         }
-        ExposedArrayWrapper<QCurve> c = new QAreaOp.XorOp().calculate(this.curves, other.curves);
+        ExposedArrayWrapper<QCurve> c;
+        if (isPacked() || other.isPacked()) {
+            // don't unpack (or cache the sorted curves of) either area
+            c = createOp(new QAreaOp.XorOp()).calculate(getCurvesWithoutUnpacking(),
+                    other.getCurvesWithoutUnpacking());
+        } else {
+            c = createOp(new QAreaOp.XorOp()).calculate(getCurves(), this::getSortedCurves,
+                    other.getCurves(), other::getSortedCurves);
+        }
         return c.elementCount == 0;
     }
 
@@ -486,9 +1367,22 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         if (t.isIdentity())
             return;
 
+        if (packedCurves != null) {
+            QCurvePack newPackedCurves = packedCurves.transform(t);
+            if (newPackedCurves != null) {
+                packedCurves = newPackedCurves;
+                sortedCurves = null;
+                if (cachedBounds != null) {
+                    cachedBounds = t.createTransformedShape(cachedBounds).getBounds2D();
+                }
+                cachedYBands = null;
+                return;
+            }
+        }
+
         if (!transform_optimized(t)) {
             // this rebuilds the Area from scratch (it's very slow)
-            curves = pathToCurves(getPathIterator(t), curves.elementCount);
+            setCurves(pathToCurves(getPathIterator(t), getCurves().elementCount, false, forkJoinPool, null));
             invalidateBounds();
         }
     }
@@ -508,7 +1402,8 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         double scaleY = t.getScaleY();
         double translateX = t.getTranslateX();
         double translateY = t.getTranslateY();
-        ExposedArrayWrapper newCurves = new ExposedArrayWrapper<>(QCurve.class, curves.elementCount);
+        ExposedArrayWrapper<QCurve> curves = getCurves();
+        ExposedArrayWrapper<QCurve> newCurves = new ExposedArrayWrapper<>(QCurve.class, curves.elementCount);
         for(int a = 0; a < curves.elementCount; a++) {
             QCurve curve = curves.elementData[a];
             QCurve newCurve;
@@ -573,13 +1468,45 @@ public class QAreaImpl implements QArea<QAreaImpl> {
             newCurves.add(newCurve);
         }
 
-        curves = newCurves;
+        if (scaleX * scaleY < 0) {
+            // a reflection reverses the orientation of every subpath
+            newCurves = reverseSubpaths(newCurves);
+        }
+        setCurves(newCurves);
         if (cachedBounds != null) {
             cachedBounds = t.createTransformedShape(cachedBounds).getBounds2D();
         }
+        cachedYBands = null;
         return true;
     }
 
+    /**
+     * Reverse the direction of every subpath, so the left edges of each
+     * subpath are once again traversed with increasing y values.
+     */
+    static ExposedArrayWrapper<QCurve> reverseSubpaths(ExposedArrayWrapper<QCurve> curves) {
+        ExposedArrayWrapper<QCurve> reversed = new ExposedArrayWrapper<>(QCurve.class, curves.elementCount);
+        int end = curves.elementCount;
+        while (end > 0) {
+            int start = end - 1;
+            while (curves.elementData[start].order != 0) {
+                start--;
+            }
+            QCurve last = curves.elementData[end - 1];
+            if (last.isIncreasingT) {
+                reversed.add(new QOrder0(last.x1, last.y1));
+            } else {
+                reversed.add(new QOrder0(last.x0, last.y0));
+            }
+            for (int a = end - 1; a > start; a--) {
+                QCurve c = curves.elementData[a];
+                reversed.add(c.getWithDirection(!c.isIncreasingT));
+            }
+            end = start;
+        }
+        return reversed;
+    }
+
     /**
      * Creates a new {@code Area} object that contains the same
      * geometry as this {@code Area} transformed by the specified
@@ -607,6 +1534,9 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         if (!getCachedBounds().contains(x, y)) {
             return false;
         }
+        if (packedCurves != null) {
+            return ((packedCurves.crossingsFor(x, y) & 1) == 1);
+        }
         int crossings = 0;
         for(int a = 0; a<curves.elementCount; a++) {
             QCurve c = curves.elementData[a];
@@ -636,7 +1566,7 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         if (!getCachedBounds().contains(x, y, w, h)) {
             return false;
         }
-        QCrossings c = QCrossings.findCrossings(curves, x, y, x+w, y+h);
+        QCrossings c = QCrossings.findCrossings(getCurvesWithoutUnpacking(), x, y, x+w, y+h);
         return (c != null && c.covers(y, y+h));
     }
 
@@ -661,7 +1591,7 @@ public class QAreaImpl implements QArea<QAreaImpl> {
         if (!getCachedBounds().intersects(x, y, w, h)) {
             return false;
         }
-        QCrossings c = QCrossings.findCrossings(curves, x, y, x+w, y+h);
+        QCrossings c = QCrossings.findCrossings(getCurvesWithoutUnpacking(), x, y, x+w, y+h);
         return (c == null || !c.isEmpty());
     }
 
@@ -687,9 +1617,70 @@ public class QAreaImpl implements QArea<QAreaImpl> {
      */
     @Override
     public PathIterator getPathIterator(AffineTransform at) {
+        if (packedCurves != null) {
+            return packedCurves.getPathIterator(at);
+        }
         return new QAreaIterator(curves, at);
     }
 
+    /**
+     * Passes the outline of this area to a {@link QPathConsumer}, one
+     * segment at a time. This describes the same segments as
+     * {@link #getPathIterator(AffineTransform)}, but it does not allocate
+     * any objects.
+     * @param consumer the object that receives each segment.
+     * @param at an optional {@code AffineTransform} to be applied to
+     * the coordinates, or {@code null} if untransformed coordinates
+     * are desired
+     * @throws NullPointerException if {@code consumer} is null
+     */
+    public void forEachSegment(QPathConsumer consumer, AffineTransform at) {
+        Objects.requireNonNull(consumer);
+        if (packedCurves != null) {
+            packedCurves.forEachSegment(consumer, at);
+            return;
+        }
+        double prevX = 0;
+        double prevY = 0;
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.order == 0) {
+                if (a > 0) {
+                    consumer.closePath();
+                }
+                QPathEmitter.moveTo(consumer, at, c.x0, c.y0);
+                prevX = c.x0;
+                prevY = c.y0;
+                continue;
+            }
+            double startX = c.isIncreasingT ? c.x0 : c.x1;
+            double startY = c.isIncreasingT ? c.y0 : c.y1;
+            double endX = c.isIncreasingT ? c.x1 : c.x0;
+            double endY = c.isIncreasingT ? c.y1 : c.y0;
+            if (startX != prevX || startY != prevY) {
+                QPathEmitter.lineTo(consumer, at, startX, startY);
+            }
+            if (c.order == 1) {
+                QPathEmitter.lineTo(consumer, at, endX, endY);
+            } else if (c.order == 2) {
+                QOrder2 quad = (QOrder2) c;
+                QPathEmitter.quadTo(consumer, at, quad.cx0, quad.cy0, endX, endY);
+            } else {
+                QOrder3 cubic = (QOrder3) c;
+                if (c.isIncreasingT) {
+                    QPathEmitter.cubicTo(consumer, at, cubic.cx0, cubic.cy0, cubic.cx1, cubic.cy1, endX, endY);
+                } else {
+                    QPathEmitter.cubicTo(consumer, at, cubic.cx1, cubic.cy1, cubic.cx0, cubic.cy0, endX, endY);
+                }
+            }
+            prevX = endX;
+            prevY = endY;
+        }
+        if (curves.elementCount > 0) {
+            consumer.closePath();
+        }
+    }
+
     /**
      * Creates a {@code PathIterator} for the flattened outline of
      * this {@code Area} object.  Only uncurved path segments
@@ -715,6 +1706,7 @@ public class QAreaImpl implements QArea<QAreaImpl> {
 }
 
 class QAreaIterator implements PathIterator {
+    private final double[] dcoords = new double[6];
     private AffineTransform transform;
     private ExposedArrayWrapper<QCurve> curves;
     private int index;
@@ -771,7 +1763,6 @@ class QAreaIterator implements PathIterator {
 
     @Override
     public int currentSegment(float[] coords) {
-        double[] dcoords = new double[6];
         int segtype = currentSegment(dcoords);
         int numpoints = (segtype == SEG_CLOSE ? 0
                 : (segtype == SEG_QUADTO ? 2
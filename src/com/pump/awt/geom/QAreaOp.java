@@ -27,7 +27,10 @@
 
 package com.pump.awt.geom;
 
+import java.awt.geom.PathIterator;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 public abstract class QAreaOp {
     public abstract static class CAGOp extends QAreaOp {
@@ -35,19 +38,99 @@ public abstract class QAreaOp {
         boolean inRight;
         boolean inResult;
 
+        /**
+         * The winding rule of the right operand if it is the curves of a
+         * path that has not been normalized, or -1 if it is normalized.
+         */
+        private int rightWindingRule = -1;
+        private int rightCount;
+
+        /**
+         * Identify the right operand as the y-monotone curves of a path
+         * that has not been normalized (such as a path with overlapping or
+         * self-intersecting subpaths). The right operand's winding is then
+         * resolved with the given rule in the same sweep that combines it
+         * with the left operand.
+         *
+         * @param windingRule PathIterator.WIND_EVEN_ODD or PathIterator.WIND_NON_ZERO.
+         */
+        void setRightWindingRule(int windingRule) {
+            rightWindingRule = windingRule;
+        }
+
+        private boolean mergeSharedEdges = true;
+
+        /**
+         * Control whether curves that appear in both operands with exactly
+         * the same coordinates are merged into one edge before the sweep
+         * (see {@link QSharedEdges}). The default is true. This produces the
+         * same geometry the sweep would, but the sweep doesn't have to
+         * identify those curves as equal in every row they span.
+         */
+        public void setMergeSharedEdges(boolean b) {
+            mergeSharedEdges = b;
+        }
+
+        /**
+         * Return true if curves that appear in both operands are merged
+         * before the sweep.
+         *
+         * @see #setMergeSharedEdges(boolean)
+         */
+        public boolean isMergeSharedEdges() {
+            return mergeSharedEdges;
+        }
+
+        private boolean cullSubpaths;
+
+        /**
+         * Control whether the subpaths of each operand that are outside of
+         * the other operand's bounds are removed before the sweep (see
+         * {@link QSubpathCulling}). The default is false.
+         * <p>
+         * Culling is exact, but it removes rows from the sweep. Where two
+         * curves cross, the sweep estimates the crossing by subdividing
+         * both curves from the top of the row it is in, so a different set
+         * of rows can move a crossing by up to about 1E-5. So the result
+         * may differ slightly from the result of java.awt.geom.Area.
+         * </p>
+         */
+        public void setCullSubpaths(boolean b) {
+            cullSubpaths = b;
+        }
+
+        /**
+         * Return true if subpaths outside of the other operand's bounds are
+         * removed before the sweep.
+         *
+         * @see #setCullSubpaths(boolean)
+         */
+        public boolean isCullSubpaths() {
+            return cullSubpaths;
+        }
+
         @Override
         public void newRow() {
             inLeft = false;
             inRight = false;
             inResult = false;
+            rightCount = 0;
         }
 
         @Override
-        public int classify(QEdge e) {
-            if (e.curveTag == CTAG_LEFT) {
+        int classify(int curveTag, boolean isIncreasingT) {
+            // an edge tagged CTAG_BOTH toggles both operands
+            if (curveTag != CTAG_RIGHT) {
                 inLeft = !inLeft;
-            } else {
-                inRight = !inRight;
+            }
+            if (curveTag != CTAG_LEFT) {
+                if (rightWindingRule == -1) {
+                    inRight = !inRight;
+                } else {
+                    rightCount += isIncreasingT ? 1 : -1;
+                    inRight = rightWindingRule == PathIterator.WIND_EVEN_ODD ?
+                            (rightCount & 1) != 0 : rightCount != 0;
+                }
             }
             boolean newClass = newClassification(inLeft, inRight);
             if (inResult == newClass) {
@@ -64,6 +147,69 @@ public abstract class QAreaOp {
 
         public abstract boolean newClassification(boolean inLeft,
                                                   boolean inRight);
+
+        @Override
+        QAreaOp createWorker() {
+            CAGOp parent = this;
+            CAGOp worker = new CAGOp() {
+                @Override
+                public boolean newClassification(boolean inLeft, boolean inRight) {
+                    return parent.newClassification(inLeft, inRight);
+                }
+            };
+            worker.rightWindingRule = rightWindingRule;
+            return worker;
+        }
+
+        @Override
+        ExposedArrayWrapper<QCurve> calculate(ExposedArrayWrapper<QCurve> left, Supplier<QCurve[]> leftSorted,
+                                              ExposedArrayWrapper<QCurve> right, Supplier<QCurve[]> rightSorted,
+                                              QSweepContext context) {
+            // Where only one operand has curves the result is either that
+            // operand or nothing, so we only need to sweep the subpaths
+            // inside the other operand's bounds, and only the y-range
+            // where both operands have curves.
+            if (newClassification(false, false)) {
+                return super.calculate(left, leftSorted, right, rightSorted, context);
+            }
+            boolean keepLeft = newClassification(true, false);
+            boolean keepRight = newClassification(false, true);
+            QSubpathCulling culling = cullSubpaths ? QSubpathCulling.create(left, right, keepLeft, keepRight,
+                    rightWindingRule == -1) : null;
+            if (culling != null) {
+                left = culling.left;
+                right = culling.right;
+                leftSorted = null;
+                rightSorted = null;
+            }
+            ExposedArrayWrapper<QCurve> curves;
+            QSweepBand band = QSweepBand.create(left, right, keepLeft, keepRight,
+                    rightWindingRule == -1, context);
+            if (band != null) {
+                mergeSharedEdges(band.edges);
+                curves = pruneEdges(band.edges, band, context);
+                band.addPassThrough(curves);
+            } else {
+                context.recycle();
+                curves = super.calculate(left, leftSorted, right, rightSorted, context);
+            }
+            if (culling != null) {
+                culling.addPassThrough(curves);
+            }
+            return curves;
+        }
+
+        @Override
+        boolean isBanded() {
+            return !newClassification(false, false);
+        }
+
+        @Override
+        void mergeSharedEdges(ExposedArrayWrapper<QEdge> edges) {
+            if (mergeSharedEdges) {
+                QSharedEdges.merge(edges);
+            }
+        }
     }
 
     public static class AddOp extends CAGOp {
@@ -94,6 +240,157 @@ public abstract class QAreaOp {
         }
     }
 
+    /**
+     * This decides whether a point belongs to the result of an {@link NaryOp}
+     * based on which operands contain that point.
+     */
+    public interface Classifier {
+        /**
+         * Include points that are inside any operand (a union).
+         */
+        Classifier ANY = new Classifier() {
+            @Override
+            public boolean isInside(boolean[] inside, int insideCount) {
+                return insideCount > 0;
+            }
+
+            @Override
+            public String toString() {
+                return "ANY";
+            }
+        };
+
+        /**
+         * Include points that are inside every operand (an intersection).
+         */
+        Classifier ALL = new Classifier() {
+            @Override
+            public boolean isInside(boolean[] inside, int insideCount) {
+                return insideCount == inside.length;
+            }
+
+            @Override
+            public String toString() {
+                return "ALL";
+            }
+        };
+
+        /**
+         * Include points that are inside the first operand and no other operand.
+         * This is equivalent to subtracting every other operand from the first operand.
+         */
+        Classifier FIRST_ONLY = new Classifier() {
+            @Override
+            public boolean isInside(boolean[] inside, int insideCount) {
+                return insideCount == 1 && inside[0];
+            }
+
+            @Override
+            public String toString() {
+                return "FIRST_ONLY";
+            }
+        };
+
+        /**
+         * Include points that are inside an odd number of operands.
+         * This is equivalent to applying exclusiveOr to every operand.
+         */
+        Classifier ODD = new Classifier() {
+            @Override
+            public boolean isInside(boolean[] inside, int insideCount) {
+                return (insideCount & 1) == 1;
+            }
+
+            @Override
+            public String toString() {
+                return "ODD";
+            }
+        };
+
+        /**
+         * Return a Classifier that includes points that are inside at least k operands.
+         */
+        static Classifier atLeast(int k) {
+            if (k < 1) {
+                throw new IllegalArgumentException("k ("+k+") must be at least 1");
+            }
+            return new Classifier() {
+                @Override
+                public boolean isInside(boolean[] inside, int insideCount) {
+                    return insideCount >= k;
+                }
+
+                @Override
+                public String toString() {
+                    return "atLeast("+k+")";
+                }
+            };
+        }
+
+        /**
+         * @param inside whether each operand contains the current point. The
+         *               array is indexed by operand, and it must not be modified.
+         * @param insideCount the number of true elements in <code>inside</code>.
+         * @return true if the current point should be part of the result.
+         */
+        boolean isInside(boolean[] inside, int insideCount);
+    }
+
+    /**
+     * This combines any number of operands in one sweep. Each edge's
+     * curveTag is the index of the operand it came from.
+     */
+    public static class NaryOp extends QAreaOp {
+        private final Classifier classifier;
+        private final boolean[] inside;
+        private int insideCount;
+        private boolean inResult;
+
+        public NaryOp(Classifier classifier, int operandCount) {
+            this.classifier = Objects.requireNonNull(classifier);
+            this.inside = new boolean[operandCount];
+        }
+
+        @Override
+        public void newRow() {
+            // every row normally ends outside of all operands, so we
+            // only need to clear the array after a malformed row
+            if (insideCount != 0) {
+                Arrays.fill(inside, false);
+                insideCount = 0;
+            }
+            inResult = false;
+        }
+
+        @Override
+        int classify(int curveTag, boolean isIncreasingT) {
+            int i = curveTag;
+            if (inside[i]) {
+                inside[i] = false;
+                insideCount--;
+            } else {
+                inside[i] = true;
+                insideCount++;
+            }
+            boolean newClass = classifier.isInside(inside, insideCount);
+            if (inResult == newClass) {
+                return ETAG_IGNORE;
+            }
+            inResult = newClass;
+            return (newClass ? ETAG_ENTER : ETAG_EXIT);
+        }
+
+        @Override
+        public int getState() {
+            return (inResult ? RSTAG_INSIDE : RSTAG_OUTSIDE);
+        }
+
+        @Override
+        QAreaOp createWorker() {
+            return new NaryOp(classifier, inside.length);
+        }
+    }
+
     public static class NZWindOp extends QAreaOp {
         private int count;
 
@@ -103,12 +400,12 @@ public abstract class QAreaOp {
         }
 
         @Override
-        public int classify(QEdge e) {
+        int classify(int curveTag, boolean isIncreasingT) {
             // Note: the right curves should be an empty set with this op...
-            // assert(e.getCurveTag() == CTAG_LEFT);
+            // assert(curveTag == CTAG_LEFT);
             int newCount = count;
             int type = (newCount == 0 ? ETAG_ENTER : ETAG_IGNORE);
-            newCount += e.curve.isIncreasingT ? 1 : -1;
+            newCount += isIncreasingT ? 1 : -1;
             count = newCount;
             return (newCount == 0 ? ETAG_EXIT : type);
         }
@@ -117,6 +414,11 @@ public abstract class QAreaOp {
         public int getState() {
             return ((count == 0) ? RSTAG_OUTSIDE : RSTAG_INSIDE);
         }
+
+        @Override
+        QAreaOp createWorker() {
+            return new NZWindOp();
+        }
     }
 
     public static class EOWindOp extends QAreaOp {
@@ -128,9 +430,9 @@ public abstract class QAreaOp {
         }
 
         @Override
-        public int classify(QEdge e) {
+        int classify(int curveTag, boolean isIncreasingT) {
             // Note: the right curves should be an empty set with this op...
-            // assert(e.getCurveTag() == CTAG_LEFT);
+            // assert(curveTag == CTAG_LEFT);
             boolean newInside = !inside;
             inside = newInside;
             return (newInside ? ETAG_ENTER : ETAG_EXIT);
@@ -140,14 +442,22 @@ public abstract class QAreaOp {
         public int getState() {
             return (inside ? RSTAG_INSIDE : RSTAG_OUTSIDE);
         }
+
+        @Override
+        QAreaOp createWorker() {
+            return new EOWindOp();
+        }
     }
 
     private QAreaOp() {
     }
 
-    /* Constants to tag the left and right curves in the edge list */
+    /* Constants to tag the left and right curves in the edge list
+     * (an NaryOp tags each curve with the index of its operand instead) */
     public static final int CTAG_LEFT = 0;
     public static final int CTAG_RIGHT = 1;
+    /* A CAGOp tags a curve that both operands share with this (see QSharedEdges) */
+    public static final int CTAG_BOTH = 2;
 
     /* Constants to classify edges */
     public static final int ETAG_IGNORE = 0;
@@ -160,15 +470,247 @@ public abstract class QAreaOp {
 
     public abstract void newRow();
 
-    public abstract int classify(QEdge e);
+    public int classify(QEdge e) {
+        return classify(e.curveTag, e.curve.isIncreasingT);
+    }
+
+    /**
+     * Classify an edge of the given operand and direction. This is the same
+     * as {@link #classify(QEdge)}, for sweeps that don't create QEdges.
+     */
+    abstract int classify(int curveTag, boolean isIncreasingT);
 
     public abstract int getState();
 
+    /**
+     * Create an op that classifies edges the same way this op does, but
+     * that has its own classification state. This is used to sweep several
+     * bands of edges at once.
+     */
+    abstract QAreaOp createWorker();
+
+    /**
+     * Return true if this op only sweeps the range of y values where both
+     * operands have curves (see {@link QSweepBand}).
+     */
+    boolean isBanded() {
+        return false;
+    }
+
+    /**
+     * Merge the edges both operands share before they are swept. This does
+     * nothing unless this op classifies edges tagged {@link #CTAG_BOTH}.
+     */
+    void mergeSharedEdges(ExposedArrayWrapper<QEdge> edges) {
+    }
+
+    private ForkJoinPool pool;
+
+    /**
+     * Assign a pool used to sweep large sets of edges in parallel. If this
+     * is null (the default) then every sweep runs on the calling thread.
+     * <p>
+     * When this is used the edges are divided into horizontal bands with
+     * similar numbers of edges, and each band is swept separately. The
+     * links identified in each band are then resolved into the final
+     * subpaths in order, just as a single sweep would resolve them.
+     * </p>
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Return the pool used to sweep large sets of edges in parallel, or null.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    private boolean splitAtCrossings;
+
+    /**
+     * Control whether every crossing of the edges is found before the
+     * sweep begins. The default is false.
+     * <p>
+     * If this is true then the edges are split wherever they cross (see
+     * {@link QCrossingEvents}), so the sweep only needs a new row where an
+     * edge begins or ends. Otherwise the sweep looks for the next crossing
+     * of neighboring edges in every row. This is faster for inputs where
+     * many curves cross each other, but it tests every pair of edges that
+     * overlap (instead of only neighboring edges), so it is usually slower
+     * for inputs with few crossings or with curves that nearly coincide.
+     * </p>
+     */
+    public void setSplitAtCrossings(boolean b) {
+        splitAtCrossings = b;
+    }
+
+    /**
+     * Return true if every crossing of the edges is found before the sweep
+     * begins.
+     *
+     * @see #setSplitAtCrossings(boolean)
+     */
+    public boolean isSplitAtCrossings() {
+        return splitAtCrossings;
+    }
+
+    private boolean radixSort = true;
+
+    /**
+     * Control whether large sets of edges are sorted with a radix sort
+     * (see {@link QEdgeSort}) or with Arrays.sort before they are swept.
+     * The default is true. Both sorts produce the same order.
+     */
+    public void setRadixSort(boolean b) {
+        radixSort = b;
+    }
+
+    /**
+     * Return true if large sets of edges are sorted with a radix sort.
+     *
+     * @see #setRadixSort(boolean)
+     */
+    public boolean isRadixSort() {
+        return radixSort;
+    }
+
+    private boolean compactResult = true;
+
+    /**
+     * Control whether consecutive curves of the result are merged when one
+     * curve can describe both of them (see {@link QCurveMerge}). The default
+     * is true. Otherwise the pieces operations cut curves into accumulate
+     * as an area is repeatedly modified.
+     * <p>
+     * A line that replaces collinear lines is calculated from their outer
+     * endpoints, so between the vertices it can differ from the result of
+     * the plain sweep by rounding errors (a few ulps). Turn this off if
+     * results must match the sweep exactly.
+     * </p>
+     */
+    public void setCompactResult(boolean b) {
+        compactResult = b;
+    }
+
+    /**
+     * Return true if consecutive curves of the result are merged.
+     *
+     * @see #setCompactResult(boolean)
+     */
+    public boolean isCompactResult() {
+        return compactResult;
+    }
+
+    private boolean adaptiveAxis = true;
+
+    /**
+     * Control whether two operands are swept along the x axis when that
+     * is estimated to be significantly cheaper (see {@link QSweepAxis}).
+     * The default is true. Only operands that consist entirely of lines
+     * are transposed: they are transposed before the sweep, and the result
+     * is transposed back, so the result has the same lines either way.
+     */
+    public void setAdaptiveAxis(boolean b) {
+        adaptiveAxis = b;
+    }
+
+    /**
+     * Return true if two operands may be swept along the x axis.
+     *
+     * @see #setAdaptiveAxis(boolean)
+     */
+    public boolean isAdaptiveAxis() {
+        return adaptiveAxis;
+    }
+
+    private boolean polygonSweep = true;
+
+    /**
+     * Control whether two operands that consist entirely of lines are
+     * swept by a {@link QPolygonSweep}, which compares their edges in
+     * primitive arrays. The default is true. Both sweeps produce exactly
+     * the same result.
+     */
+    public void setPolygonSweep(boolean b) {
+        polygonSweep = b;
+    }
+
+    /**
+     * Return true if operands that consist entirely of lines are swept by
+     * a QPolygonSweep.
+     *
+     * @see #setPolygonSweep(boolean)
+     */
+    public boolean isPolygonSweep() {
+        return polygonSweep;
+    }
+
+    /**
+     * This is true while this op combines operands that are all polygonal
+     * (and {@link #isPolygonSweep()} is true), so every edge it sweeps is a line.
+     */
+    boolean polygonal;
+
+    /**
+     * Return true if a list of curves has no quadratic or cubic curves.
+     */
+    static boolean isPolygonal(ExposedArrayWrapper<QCurve> curves) {
+        for (int a = 0; a < curves.elementCount; a++) {
+            if (curves.elementData[a].order > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public ExposedArrayWrapper<QCurve> calculate(ExposedArrayWrapper<QCurve> left, ExposedArrayWrapper<QCurve> right) {
-        ExposedArrayWrapper<QEdge> edges = new ExposedArrayWrapper<>(QEdge.class, left.elementCount + right.elementCount);
-        addEdges(edges, left, QAreaOp.CTAG_LEFT);
-        addEdges(edges, right, QAreaOp.CTAG_RIGHT);
-        ExposedArrayWrapper<QCurve> curves = pruneEdges(edges);
+        return calculate(left, null, right, null);
+    }
+
+    /**
+     * Combine two operands, optionally using their curves in sweep order.
+     *
+     * @param leftSorted an optional supplier of the left operand's curves
+     *                   sorted by {@link QEdgeSort#sortCurves(ExposedArrayWrapper)}.
+     *                   This is only called if every edge is swept, and
+     *                   it is only used if rightSorted is also non-null.
+     * @param rightSorted an optional supplier of the right operand's sorted curves.
+     */
+    ExposedArrayWrapper<QCurve> calculate(ExposedArrayWrapper<QCurve> left, Supplier<QCurve[]> leftSorted,
+                                          ExposedArrayWrapper<QCurve> right, Supplier<QCurve[]> rightSorted) {
+        QSweepContext context = QSweepContext.acquire();
+        try {
+            polygonal = polygonSweep && isPolygonal(left) && isPolygonal(right);
+            if (adaptiveAxis && QSweepAxis.isTransposeCheaper(left, right, isBanded())) {
+                ExposedArrayWrapper<QCurve> transposed = calculate(QSweepAxis.transpose(left), null,
+                        QSweepAxis.transpose(right), null, context);
+                return QSweepAxis.transpose(transposed);
+            }
+            return calculate(left, leftSorted, right, rightSorted, context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Combine two operands using the transient objects of the given context.
+     */
+    ExposedArrayWrapper<QCurve> calculate(ExposedArrayWrapper<QCurve> left, Supplier<QCurve[]> leftSorted,
+                                          ExposedArrayWrapper<QCurve> right, Supplier<QCurve[]> rightSorted,
+                                          QSweepContext context) {
+        ExposedArrayWrapper<QEdge> edges = context.edges;
+        if (leftSorted != null && rightSorted != null) {
+            // the merged edges are already sorted, so the sweep's sort
+            // only has to confirm their order
+            mergeEdges(edges, leftSorted.get(), rightSorted.get(), context);
+        } else {
+            addEdges(edges, left, QAreaOp.CTAG_LEFT, context);
+            addEdges(edges, right, QAreaOp.CTAG_RIGHT, context);
+        }
+        mergeSharedEdges(edges);
+        ExposedArrayWrapper<QCurve> curves = pruneEdges(edges, null, context);
         if (false) {
             System.out.println("result: ");
             for (int i = 0; i < curves.elementCount; i++) {
@@ -178,22 +720,141 @@ public abstract class QAreaOp {
         return curves;
     }
 
-    private static void addEdges(ExposedArrayWrapper<QEdge> edges, ExposedArrayWrapper<QCurve> curves, int curvetag) {
+    /**
+     * Combine any number of operands in a single sweep. Each operand must already
+     * be normalized (such as the curves of a QAreaImpl), and its edges are tagged
+     * with its index in the list.
+     */
+    public ExposedArrayWrapper<QCurve> calculate(List<ExposedArrayWrapper<QCurve>> operands) {
+        QSweepContext context = QSweepContext.acquire();
+        try {
+            polygonal = polygonSweep;
+            for (ExposedArrayWrapper<QCurve> operand : operands) {
+                polygonal = polygonal && isPolygonal(operand);
+            }
+            ExposedArrayWrapper<QEdge> edges = context.edges;
+            for (int a = 0; a < operands.size(); a++) {
+                addEdges(edges, operands.get(a), a, context);
+            }
+            return pruneEdges(edges, null, context);
+        } finally {
+            context.release();
+        }
+    }
+
+    private static void addEdges(ExposedArrayWrapper<QEdge> edges, ExposedArrayWrapper<QCurve> curves, int curvetag,
+                                 QSweepContext context) {
         for(int a = 0; a<curves.elementCount; a++) {
             QCurve c = curves.elementData[a];
             if (c.order > 0) {
-                edges.add(new QEdge(c, curvetag));
+                edges.add(context.createEdge(c, curvetag));
             }
         }
     }
 
-    private ExposedArrayWrapper<QCurve> pruneEdges(ExposedArrayWrapper<QEdge> edges) {
+    /**
+     * Add the edges of two operands whose curves are sorted by
+     * {@link QEdgeSort#CURVE_ORDER}, in the order a stable sort of all of
+     * their edges would produce.
+     */
+    private static void mergeEdges(ExposedArrayWrapper<QEdge> edges, QCurve[] left, QCurve[] right,
+                                   QSweepContext context) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            if (i == left.length || (j < right.length && QEdgeSort.CURVE_ORDER.compare(right[j], left[i]) < 0)) {
+                edges.add(context.createEdge(right[j++], QAreaOp.CTAG_RIGHT));
+            } else {
+                edges.add(context.createEdge(left[i++], QAreaOp.CTAG_LEFT));
+            }
+        }
+    }
+
+    /**
+     * @param band an optional band that limits which y values are swept. If
+     *             this is non-null then the sweep resumes the band's chains
+     *             at its top and joins its runs at its bottom.
+     * @param context the context that provides the sweep's transient objects.
+     */
+    ExposedArrayWrapper<QCurve> pruneEdges(ExposedArrayWrapper<QEdge> edges, QSweepBand band,
+                                           QSweepContext context) {
         int numedges = edges.elementCount;
         if (numedges < 2) {
             // empty list is expected with less than 2 edges
             return new ExposedArrayWrapper<>(QCurve.class);
         }
-        Arrays.sort(edges.elementData, 0, edges.elementCount);
+        ExposedArrayWrapper<QCurveLink> subcurves = context.subcurves;
+        ExposedArrayWrapper<QChainEnd> chains = context.chains;
+        double ytop = Double.NEGATIVE_INFINITY;
+        double ybot = Double.POSITIVE_INFINITY;
+        if (band != null) {
+            band.addTopChains(chains);
+            ytop = band.ytop;
+            ybot = band.ybot;
+        }
+        if (splitAtCrossings) {
+            QCrossingEvents.splitEdges(edges, context);
+            numedges = edges.elementCount;
+        }
+        if (pool != null && numedges >= QParallelSweep.MIN_EDGE_COUNT) {
+            QParallelSweep.sweep(this, pool, edges, ytop, ybot, context);
+        } else {
+            sweepRows(edges, ytop, ybot, null, context);
+        }
+        if (band != null) {
+            band.resolveBottom();
+        }
+        finalizeSubCurves(subcurves, chains);
+        ExposedArrayWrapper<QCurve> ret = new ExposedArrayWrapper<>(QCurve.class, Math.max(subcurves.elementCount * 2, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY) );
+        for (int a = 0; a<subcurves.elementCount; a++) {
+            QCurveLink link = subcurves.elementData[a];
+            ret.add(link.getMoveto());
+            QCurveLink nextlink = link;
+            while ((nextlink = nextlink.next) != null) {
+                if (!link.absorb(nextlink)) {
+                    addSubCurve(ret, link.getSubCurve());
+                    link = nextlink;
+                }
+            }
+            addSubCurve(ret, link.getSubCurve());
+        }
+        // the sources of fragments are only needed to merge them (above),
+        // and the result shouldn't keep its operands' curves in memory
+        for (int a = 0; a < ret.elementCount; a++) {
+            ret.elementData[a].source = null;
+        }
+        return ret;
+    }
+
+    private void addSubCurve(ExposedArrayWrapper<QCurve> curves, QCurve c) {
+        if (compactResult) {
+            QCurveMerge.add(curves, c);
+        } else {
+            curves.add(c);
+        }
+    }
+
+    /**
+     * Sweep the edges from top to bottom, classifying the active edges in
+     * each row.
+     *
+     * @param ytop the y value the sweep starts at (or negative infinity).
+     * @param ybot the y value the sweep stops at (or positive infinity).
+     * @param rows if this is null then the links of each row are resolved
+     *             into the context's chains as they are identified.
+     *             Otherwise each row is recorded here to be resolved later.
+     * @param context the context that provides the sweep's transient
+     *                objects, or null to allocate new objects.
+     */
+    void sweepRows(ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+                   QParallelSweep.Rows rows, QSweepContext context) {
+        int numedges = edges.elementCount;
+        QEdgeSort.sort(edges.elementData, 0, edges.elementCount, radixSort);
+        if (polygonal) {
+            QPolygonSweep sweep = context == null ? new QPolygonSweep() : context.getPolygonSweep();
+            sweep.sweep(this, edges, ytop, ybot, rows, context);
+            return;
+        }
         if (false) {
             System.out.println("pruning: ");
             for (int i = 0; i < numedges; i++) {
@@ -206,16 +867,16 @@ public abstract class QAreaOp {
         int cur = 0;
         int next = 0;
         double[] yrange = new double[2];
-        ExposedArrayWrapper<QCurveLink> subcurves = new ExposedArrayWrapper<>(QCurveLink.class);
-        ExposedArrayWrapper<QChainEnd> chains = new ExposedArrayWrapper<>(QChainEnd.class);
-        ExposedArrayWrapper<QCurveLink> links = new ExposedArrayWrapper<>(QCurveLink.class);
+        ExposedArrayWrapper<QCurveLink> links = context == null ?
+                new ExposedArrayWrapper<>(QCurveLink.class) : context.links;
+        yrange[0] = ytop;
         // Active edges are between left (inclusive) and right (exclusive)
         while (left < numedges) {
             double y = yrange[0];
             // Prune active edges that fall off the top of the active y range
             for (cur = next = right - 1; cur >= left; cur--) {
                 e = edges.elementData[cur];
-                if (e.curve.y1 > y) {
+                if (e.ybot > y) {
                     if (next > cur) {
                         edges.elementData[next] = e;
                     }
@@ -228,16 +889,22 @@ public abstract class QAreaOp {
                 if (right >= numedges) {
                     break;
                 }
-                y = edges.elementData[right].curve.y0;
-                if (y > yrange[0]) {
-                    finalizeSubCurves(subcurves, chains);
+                y = edges.elementData[right].ytop;
+                if (y > yrange[0] && rows == null) {
+                    finalizeSubCurves(context.subcurves, context.chains);
                 }
                 yrange[0] = y;
             }
-            // Incorporate new active edges that enter the active y range
+            // Incorporate new active edges that enter the active y range.
+            // They are appended after the active edges, which are still
+            // sorted from the previous row, so the insertion sort below
+            // compares each new edge with every edge it passes (exactly as
+            // java.awt.geom.Area does). Every comparison can end the row
+            // sooner, so skipping any of them would move the rows, and
+            // with them the estimated crossings of curves.
             while (right < numedges) {
                 e = edges.elementData[right];
-                if (e.curve.y0 > y) {
+                if (e.ytop > y) {
                     break;
                 }
                 right++;
@@ -245,9 +912,12 @@ public abstract class QAreaOp {
             // Sort the current active edges by their X values and
             // determine the maximum valid Y range where the X ordering
             // is correct
-            yrange[1] = edges.elementData[left].curve.y1;
+            yrange[1] = edges.elementData[left].ybot;
+            if (yrange[1] > ybot) {
+                yrange[1] = ybot;
+            }
             if (right < numedges) {
-                y = edges.elementData[right].curve.y0;
+                y = edges.elementData[right].ytop;
                 if (yrange[1] > y) {
                     yrange[1] = y;
                 }
@@ -332,7 +1002,7 @@ public abstract class QAreaOp {
                         {
                             activematch = e;
                         }
-                        y = e.curve.y1;
+                        y = e.ybot;
                         if (y > furthesty) {
                             longestmatch = e;
                             furthesty = y;
@@ -350,7 +1020,9 @@ public abstract class QAreaOp {
                 }
                 if (etag != QAreaOp.ETAG_IGNORE) {
                     e.record(yend, etag);
-                    links.add(new QCurveLink(e.curve, ystart, yend, etag));
+                    links.add(context == null ?
+                            new QCurveLink(e.curve, ystart, yend, etag) :
+                            context.createLink(e.curve, ystart, yend, etag));
                 }
             }
             // assert(getState() == AreaOp.RSTAG_OUTSIDE);
@@ -361,7 +1033,7 @@ public abstract class QAreaOp {
                 System.out.println("y top = "+yrange[0]);
                 if (right < numedges) {
                     System.out.println("y top of next curve = "+
-                            edges.elementData[right].curve.y0);
+                            edges.elementData[right].ytop);
                 } else {
                     System.out.println("no more curves");
                 }
@@ -381,27 +1053,17 @@ public abstract class QAreaOp {
                     System.out.println("  "+link.getSubCurve());
                 }
             }
-            resolveLinks(subcurves, chains, links);
-            links.clear();
+            if (rows == null) {
+                resolveLinks(context.subcurves, context.chains, links, context);
+                links.clear();
+            } else {
+                rows.add(ystart, yend, links);
+                links.clear();
+            }
             // Finally capture the bottom of the valid Y range as the top
             // of the next Y range.
             yrange[0] = yend;
         }
-        finalizeSubCurves(subcurves, chains);
-        ExposedArrayWrapper<QCurve> ret = new ExposedArrayWrapper<>(QCurve.class, Math.max(subcurves.elementCount * 2, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY) );
-        for (int a = 0; a<subcurves.elementCount; a++) {
-            QCurveLink link = subcurves.elementData[a];
-            ret.add(link.getMoveto());
-            QCurveLink nextlink = link;
-            while ((nextlink = nextlink.next) != null) {
-                if (!link.absorb(nextlink)) {
-                    ret.add(link.getSubCurve());
-                    link = nextlink;
-                }
-            }
-            ret.add(link.getSubCurve());
-        }
-        return ret;
     }
 
     public static void finalizeSubCurves(ExposedArrayWrapper<QCurveLink> subcurves,
@@ -430,6 +1092,18 @@ public abstract class QAreaOp {
     public static void resolveLinks(ExposedArrayWrapper<QCurveLink> subcurves,
                                     ExposedArrayWrapper<QChainEnd> chains,
                                     ExposedArrayWrapper<QCurveLink> links)
+    {
+        resolveLinks(subcurves, chains, links, null);
+    }
+
+    /**
+     * @param context the context that provides the transient objects used
+     *                here, or null to allocate new objects.
+     */
+    static void resolveLinks(ExposedArrayWrapper<QCurveLink> subcurves,
+                             ExposedArrayWrapper<QChainEnd> chains,
+                             ExposedArrayWrapper<QCurveLink> links,
+                             QSweepContext context)
     {
         int numlinks = links.elementCount;
         QCurveLink[] linklist;
@@ -439,7 +1113,9 @@ public abstract class QAreaOp {
             if ((numlinks & 1) != 0) {
                 throw new InternalError("Odd number of new curves!");
             }
-            linklist = Arrays.copyOf(links.elementData, numlinks + 2);
+            linklist = context == null ?
+                    Arrays.copyOf(links.elementData, numlinks + 2) :
+                    context.copyLinks(links);
         }
         int numchains = chains.elementCount;
         QChainEnd[] endlist;
@@ -449,7 +1125,9 @@ public abstract class QAreaOp {
             if ((numchains & 1) != 0) {
                 throw new InternalError("Odd number of chains!");
             }
-            endlist = Arrays.copyOf(chains.elementData, numchains+2);
+            endlist = context == null ?
+                    Arrays.copyOf(chains.elementData, numchains+2) :
+                    context.copyChainEnds(chains);
         }
         int curchain = 0;
         int curlink = 0;
@@ -503,8 +1181,14 @@ public abstract class QAreaOp {
                 nextchain = endlist[curchain+1];
             }
             if (connectlinks) {
-                QChainEnd openend = new QChainEnd(link, null);
-                QChainEnd closeend = new QChainEnd(nextlink, openend);
+                QChainEnd openend, closeend;
+                if (context == null) {
+                    openend = new QChainEnd(link, null);
+                    closeend = new QChainEnd(nextlink, openend);
+                } else {
+                    openend = context.createChainEnd(link, link, link.etag, null);
+                    closeend = context.createChainEnd(nextlink, nextlink, nextlink.etag, openend);
+                }
 
                 chains.add(openend);
                 chains.add(closeend);
@@ -34,14 +34,38 @@ final class QChainEnd {
     int etag;
 
     public QChainEnd(QCurveLink first, QChainEnd partner) {
-        this.head = first;
-        this.tail = first;
+        reset(first, first, first.etag, partner);
+    }
+
+    /**
+     * Create a chain end for a list of links that has already been
+     * connected from head to tail.
+     */
+    QChainEnd(QCurveLink head, QCurveLink tail, int etag, QChainEnd partner) {
+        reset(head, tail, etag, partner);
+    }
+
+    /**
+     * Reinitialize this chain end so a QSweepContext can reuse it.
+     */
+    void reset(QCurveLink head, QCurveLink tail, int etag, QChainEnd partner) {
+        this.head = head;
+        this.tail = tail;
         this.partner = partner;
-        this.etag = first.etag;
+        this.etag = etag;
         if (partner != null)
             partner.partner = this;
     }
 
+    /**
+     * Release the references this chain end holds while it waits to be reused.
+     */
+    void clear() {
+        head = null;
+        tail = null;
+        partner = null;
+    }
+
     public QCurveLink getChain() {
         return head;
     }
@@ -98,12 +122,18 @@ final class QChainEnd {
     }
 
     public void addLink(QCurveLink newlink) {
+        // An edge that stays in the result for many rows produces one link
+        // per row. Absorbing them here keeps the chain at one link per curve.
         if (etag == QAreaOp.ETAG_ENTER) {
-            tail.next = newlink;
-            tail = newlink;
+            if (!tail.absorb(newlink)) {
+                tail.next = newlink;
+                tail = newlink;
+            }
         } else {
-            newlink.next = head;
-            head = newlink;
+            if (!head.absorb(newlink)) {
+                newlink.next = head;
+                head = newlink;
+            }
         }
     }
 
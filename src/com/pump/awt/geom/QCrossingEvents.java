@@ -0,0 +1,128 @@
+package com.pump.awt.geom;
+
+import java.util.Arrays;
+
+/**
+ * This finds where every pair of edges cross before a sweep begins, and
+ * splits the edges at those y values.
+ * <p>
+ * Edges enter and leave a list of active edges in order of their top and
+ * bottom y values (the event queue), and each new edge is tested against
+ * every active edge whose x values overlap it. After the edges are split
+ * two edges can only change their left/right order where one of them
+ * begins or ends, so the sweep can order them by comparing their x values
+ * once per row instead of searching for the next crossing in every row.
+ * </p>
+ * <p>
+ * If the crossings of two curves can't be identified (for example: because
+ * they coincide) then neither edge is marked as split at its crossings, and
+ * the sweep compares those edges the usual way.
+ * </p>
+ */
+final class QCrossingEvents {
+
+    private final QEdge[] edges;
+    private final double[][] splits;
+    private final int[] splitCounts;
+    private final boolean[] unresolved;
+    private final double[] roots = new double[4];
+
+    private QCrossingEvents(QEdge[] edges) {
+        this.edges = edges;
+        splits = new double[edges.length][];
+        splitCounts = new int[edges.length];
+        unresolved = new boolean[edges.length];
+    }
+
+    /**
+     * Replace edges with pieces that don't cross each other, except at
+     * their tops and bottoms.
+     *
+     * @param context the context that provides the new edges.
+     */
+    static void splitEdges(ExposedArrayWrapper<QEdge> edges, QSweepContext context) {
+        QEdge[] sorted = Arrays.copyOf(edges.elementData, edges.elementCount);
+        Arrays.sort(sorted);
+        QCrossingEvents events = new QCrossingEvents(sorted);
+        events.findCrossings();
+
+        edges.clear();
+        for (int a = 0; a < sorted.length; a++) {
+            events.addPieces(a, edges, context);
+        }
+    }
+
+    private void findCrossings() {
+        int[] active = new int[16];
+        int activeCount = 0;
+        for (int i = 0; i < edges.length; i++) {
+            QEdge e = edges[i];
+            for (int k = activeCount - 1; k >= 0; k--) {
+                QEdge other = edges[active[k]];
+                if (other.ybot <= e.ytop) {
+                    active[k] = active[--activeCount];
+                } else if (other.curve.xmax >= e.curve.xmin && e.curve.xmax >= other.curve.xmin) {
+                    findCrossings(active[k], i);
+                }
+            }
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, activeCount * 2);
+            }
+            active[activeCount++] = i;
+        }
+    }
+
+    /**
+     * Record where two edges cross.
+     */
+    private void findCrossings(int i, int j) {
+        QEdge a = edges[i];
+        QEdge b = edges[j];
+        double y0 = Math.max(a.ytop, b.ytop);
+        double y1 = Math.min(a.ybot, b.ybot);
+        double[] ys = QCurveIntersections.find(a.curve, b.curve, y0, y1, roots);
+        if (ys == null) {
+            unresolved[i] = unresolved[j] = true;
+            return;
+        }
+        for (double y : ys) {
+            addSplit(i, y);
+            addSplit(j, y);
+        }
+    }
+
+    private void addSplit(int i, double y) {
+        if (y <= edges[i].ytop || y >= edges[i].ybot) {
+            return;
+        }
+        if (splits[i] == null) {
+            splits[i] = new double[4];
+        } else if (splitCounts[i] == splits[i].length) {
+            splits[i] = Arrays.copyOf(splits[i], splitCounts[i] * 2);
+        }
+        splits[i][splitCounts[i]++] = y;
+    }
+
+    private void addPieces(int i, ExposedArrayWrapper<QEdge> dest, QSweepContext context) {
+        QEdge e = edges[i];
+        boolean split = !unresolved[i];
+        int count = splitCounts[i];
+        if (count == 0) {
+            e.splitAtCrossings = split;
+            dest.add(e);
+            return;
+        }
+        double[] ys = splits[i];
+        Arrays.sort(ys, 0, count);
+        double ytop = e.ytop;
+        for (int k = 0; k <= count; k++) {
+            double ybot = k < count ? ys[k] : e.ybot;
+            if (ybot > ytop) {
+                QEdge piece = context.createEdge(e.curve, e.curveTag, ytop, ybot);
+                piece.splitAtCrossings = split;
+                dest.add(piece);
+                ytop = ybot;
+            }
+        }
+    }
+}
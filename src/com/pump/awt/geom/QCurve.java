@@ -57,9 +57,76 @@ public abstract class QCurve {
         }
     }
 
-    public static void insertQuad(ExposedArrayWrapper<QCurve> curves,
-                                  double x0, double y0,
-                                  double[] coords)
+    /**
+     * The distance (relative to the size of a segment) its control points
+     * may be from a lower degree segment before it is replaced by that
+     * segment. This is slightly more than the precision of a float, so
+     * segments that were stored as floats (such as glyph outlines) are
+     * still recognized.
+     * <p>
+     * Cubics that are really quadratics (such as converted TrueType
+     * outlines) are stored as QOrder2s, and quadratics or cubics whose
+     * control points lie on the line between their endpoints are stored as
+     * QOrder1s. Lower degree curves are cheaper to evaluate and to compare
+     * in every operation that involves them.
+     * </p>
+     */
+    static final double DEGREE_REDUCTION_TOLERANCE = 1e-7;
+
+    /**
+     * Return the largest horizontal or vertical distance between (x0, y0)
+     * and the points in coords[0, 2 * pointCount).
+     */
+    private static double getExtent(double x0, double y0, double[] coords, int pointCount) {
+        double extent = 0;
+        for (int a = 0; a < pointCount * 2; a += 2) {
+            extent = Math.max(extent, Math.max(Math.abs(coords[a] - x0), Math.abs(coords[a + 1] - y0)));
+        }
+        return extent;
+    }
+
+    /**
+     * Return true if (x, y) is within the given distance of the line
+     * segment from (x0, y0) to (x1, y1).
+     */
+    private static boolean isNearLine(double x0, double y0, double x1, double y1,
+                                      double x, double y, double tolerance) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x - (x0 + t * dx);
+        double ey = y - (y0 + t * dy);
+        return ex * ex + ey * ey <= tolerance * tolerance;
+    }
+
+    /**
+     * Add a quadratic curve, or a line if the curve is a line.
+     *
+     * @return true if the curve was stored as a line.
+     */
+    public static boolean insertQuad(ExposedArrayWrapper<QCurve> curves,
+                                     double x0, double y0,
+                                     double[] coords)
+    {
+        double y1 = coords[3];
+        double tolerance = DEGREE_REDUCTION_TOLERANCE * getExtent(x0, y0, coords, 2);
+        if (isNearLine(x0, y0, coords[2], y1, coords[0], coords[1], tolerance)) {
+            // the control point is on the line, so this is a line
+            insertLine(curves, x0, y0, coords[2], y1);
+            return true;
+        }
+        insertQuadCurve(curves, x0, y0, coords);
+        return false;
+    }
+
+    /**
+     * Add a quadratic curve without checking whether it is a line.
+     */
+    private static void insertQuadCurve(ExposedArrayWrapper<QCurve> curves,
+                                        double x0, double y0,
+                                        double[] coords)
     {
         double y1 = coords[3];
         if (y0 > y1) {
@@ -80,11 +147,40 @@ public abstract class QCurve {
         }
     }
 
-    public static void insertCubic(ExposedArrayWrapper<QCurve> curves,
-                                   double x0, double y0,
-                                   double[] coords)
+    /**
+     * Add a cubic curve, or a lower degree curve if the cubic curve is a
+     * quadratic curve or a line.
+     *
+     * @return true if the curve was stored as a lower degree curve.
+     */
+    public static boolean insertCubic(ExposedArrayWrapper<QCurve> curves,
+                                      double x0, double y0,
+                                      double[] coords)
     {
         double y1 = coords[5];
+        double tolerance = DEGREE_REDUCTION_TOLERANCE * getExtent(x0, y0, coords, 3);
+        if (isNearLine(x0, y0, coords[4], y1, coords[0], coords[1], tolerance) &&
+                isNearLine(x0, y0, coords[4], y1, coords[2], coords[3], tolerance)) {
+            // both control points are on the line, so this is a line
+            insertLine(curves, x0, y0, coords[4], y1);
+            return true;
+        }
+        // A cubic is a quadratic if its third difference (P3 - 3 * P2 +
+        // 3 * P1 - P0) is zero. Then the quadratic's control point is
+        // (3 * P1 - P0) / 2, which is also (3 * P2 - P3) / 2.
+        double dx = coords[4] - 3 * coords[2] + 3 * coords[0] - x0;
+        double dy = y1 - 3 * coords[3] + 3 * coords[1] - y0;
+        if (Math.abs(dx) <= tolerance && Math.abs(dy) <= tolerance) {
+            double cx = (3 * (coords[0] + coords[2]) - x0 - coords[4]) / 4;
+            double cy = (3 * (coords[1] + coords[3]) - y0 - y1) / 4;
+            double x1 = coords[4];
+            coords[0] = cx;
+            coords[1] = cy;
+            coords[2] = x1;
+            coords[3] = y1;
+            insertQuadCurve(curves, x0, y0, coords);
+            return true;
+        }
         if (y0 > y1) {
             QOrder3.insert(curves, coords,
                     coords[4], y1,
@@ -94,7 +190,6 @@ public abstract class QCurve {
                     false);
         } else if (y0 == y1 && y0 == coords[1] && y0 == coords[3]) {
             // Do not add horizontal lines
-            return;
         } else {
             QOrder3.insert(curves, coords,
                     x0, y0,
@@ -103,6 +198,7 @@ public abstract class QCurve {
                     coords[4], y1,
                     true);
         }
+        return false;
     }
 
     /**
@@ -859,7 +955,65 @@ public abstract class QCurve {
     public abstract QCurve getReversedCurve();
     public abstract QCurve getSubCurve(double ystart, double yend, boolean isIncreasingT);
 
-    public int compareTo(QCurve that, double[] yrange) {
+    /**
+     * The curve this curve was cut from by {@link #getFragment(double, double, boolean)},
+     * or null if this curve is not a fragment. This is only assigned while
+     * an operation assembles its result: the operation clears it afterwards
+     * so its result doesn't keep its operands' curves in memory.
+     */
+    QCurve source;
+
+    /**
+     * Return the part of this curve between two y values (like
+     * {@link #getSubCurve(double, double, boolean)}), and remember which
+     * curve it was cut from, so adjacent fragments of one curve can be
+     * rejoined (see {@link QCurveMerge}).
+     */
+    public QCurve getFragment(double ystart, double yend, boolean isIncreasingT) {
+        QCurve c;
+        if (ystart == y0 && yend == y1) {
+            c = getWithDirection(isIncreasingT);
+        } else {
+            c = getSubCurve(ystart, yend, isIncreasingT);
+        }
+        if (c != this) {
+            c.source = source != null ? source : this;
+        }
+        return c;
+    }
+
+    /**
+     * Compare this curve to another curve the sweep is sorting. This returns
+     * -1, 0 or 1 if this curve is left of, equal to or right of that curve,
+     * and it limits yrange[1] so that ordering holds from yrange[0] to
+     * yrange[1].
+     * <p>
+     * Two lines are compared directly. Every other pair is compared by
+     * {@link #compareCurves(QCurve, double[], boolean)}, which skips its
+     * subdivision when the curves are provably apart.
+     * </p>
+     */
+    public final int compareTo(QCurve that, double[] yrange) {
+        if (order == 1 && that.order == 1) {
+            return QOrder1.compareLines(x0, y0, x1, y1,
+                    that.x0, that.y0, that.x1, that.y1, yrange);
+        }
+        return compareCurves(that, yrange, false);
+    }
+
+    /**
+     * Compare two curves. This subdivides both curves until they separate,
+     * or until small enough pieces intersect. If a line separates the curves
+     * in the range then the subdivision can't find an intersection, so it is
+     * skipped: the range still ends where either curve turns, exactly as it
+     * does when the subdivision fails, so the result is the same either way.
+     *
+     * @param apart true if the caller already knows the curves are apart
+     *              from yrange[0] to yrange[1], or false if this method
+     *              should test that.
+     * @see QCurveIntersections#isApart(QCurve, double, double, QCurve, double, double)
+     */
+    int compareCurves(QCurve that, double[] yrange, boolean apart) {
         /*
         System.out.println(this+".compareTo("+that+")");
         System.out.println("target range = "+yrange[0]+"=>"+yrange[1]);
@@ -955,6 +1109,9 @@ public abstract class QCurve {
         System.out.println("s range = "+s0+" to "+s1);
         System.out.println("t range = "+t0+" to "+t1);
         */
+        if (!apart) {
+            apart = QCurveIntersections.isApart(this, s0, s1, that, t0, t1);
+        }
         while (s0 < s1 && t0 < t1) {
             double sh = this.nextVertical(s0, s1);
             double xsh = this.XforT(sh);
@@ -967,7 +1124,7 @@ public abstract class QCurve {
             System.out.println("th = "+th);
             */
             try {
-                if (findIntersect(that, yrange, ymin, 0, 0,
+                if (!apart && findIntersect(that, yrange, ymin, 0, 0,
                         s0, xs0, ys0, sh, xsh, ysh,
                         t0, xt0, yt0, th, xth, yth)) {
                     break;
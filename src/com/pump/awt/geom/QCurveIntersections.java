@@ -0,0 +1,546 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.Arrays;
+
+/**
+ * This finds the y values where two curves (lines, quadratic or cubic
+ * curves) cross using Bezier clipping.
+ * <p>
+ * Each step clips one curve to the parameter range where its control
+ * polygon lies inside the "fat line" that bounds the other curve, and then
+ * the curves switch roles. Transversal intersections converge quadratically.
+ * If a step doesn't shrink its curve enough (near tangents, or more than one
+ * intersection) then that curve is split in half and both halves are
+ * searched. Once both pieces are small, the pieces are only tested for a
+ * change in their left/right order, so curves that touch without crossing
+ * (such as the two sides of an ellipse at its bottom) don't have to converge.
+ * </p>
+ */
+final class QCurveIntersections {
+
+    /**
+     * The maximum number of clipping steps one search may take. Curves
+     * that overlap each other may not converge, so after this many steps
+     * {@link #find(QCurve, QCurve, double, double, double[])} gives up.
+     */
+    static final int MAX_STEPS = 400;
+
+    /**
+     * If clipping keeps more than this fraction of a curve then that curve
+     * is split in half.
+     */
+    private static final double MAX_CLIP_RATIO = .8;
+
+    /**
+     * Pieces that are smaller than this fraction of the curves are tested
+     * for a change in order instead of being split again.
+     */
+    private static final double LEAF_RATIO = 1E-3;
+
+    private static final double[] EMPTY = new double[0];
+
+    /**
+     * Return the sorted y values between ylo and yhi where two curves cross
+     * or may touch, or null if the search failed.
+     *
+     * @param a a line, quadratic or cubic curve.
+     * @param b another line, quadratic or cubic curve.
+     * @param ylo the smallest y value of interest.
+     * @param yhi the largest y value of interest.
+     * @param roots an array of at least 4 elements the search may use
+     *              as scratch space.
+     */
+    static double[] find(QCurve a, QCurve b, double ylo, double yhi, double[] roots) {
+        if (isBefore(b, a)) {
+            // search the same way no matter which curve is asked about first
+            QCurve t = a;
+            a = b;
+            b = t;
+        }
+        yhi = Math.min(yhi, Math.min(a.y1, b.y1));
+        ylo = Math.max(ylo, Math.max(a.y0, b.y0));
+        if (ylo >= yhi || a.xmax < b.xmin || b.xmax < a.xmin) {
+            return EMPTY;
+        }
+        if (a.order == 1 && b.order == 1) {
+            return findLinesCrossings(a, b, ylo, yhi);
+        }
+        if (a.order == 1 || b.order == 1) {
+            return findLineCrossings(a.order == 1 ? a : b, a.order == 1 ? b : a, ylo, yhi, roots);
+        }
+        double scale = Math.max(Math.max(Math.abs(a.xmin), Math.abs(a.xmax)),
+                Math.max(Math.abs(a.y0), Math.abs(a.y1)));
+        scale = Math.max(scale, Math.max(Math.max(Math.abs(b.xmin), Math.abs(b.xmax)),
+                Math.max(Math.abs(b.y0), Math.abs(b.y1))));
+        double size = Math.max(Math.max(a.xmax - a.xmin, a.y1 - a.y0),
+                Math.max(b.xmax - b.xmin, b.y1 - b.y0));
+        QCurveIntersections search = new QCurveIntersections(a, b, ylo, yhi,
+                Math.max(scale * 1E-12, 1E-300), size * LEAF_RATIO);
+        search.clip(getControlPoints(a), getControlPoints(b), 0);
+        if (search.steps > MAX_STEPS) {
+            return null;
+        }
+        return search.getYs();
+    }
+
+    /**
+     * Return the sorted y values between ylo and yhi where two lines cross
+     * or touch, or null if they lie on the same line.
+     */
+    private static double[] findLinesCrossings(QCurve a, QCurve b, double ylo, double yhi) {
+        double f0 = a.XforY(ylo) - b.XforY(ylo);
+        double f1 = a.XforY(yhi) - b.XforY(yhi);
+        if (f0 == 0 && f1 == 0) {
+            return null;
+        } else if (f0 == 0) {
+            return new double[] { ylo };
+        } else if (f1 == 0) {
+            return new double[] { yhi };
+        } else if ((f0 < 0) != (f1 < 0)) {
+            return new double[] { ylo + (yhi - ylo) * f0 / (f0 - f1) };
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Return the sorted y values between ylo and yhi where a line crosses
+     * or touches a quadratic or cubic curve, or null if the curve lies on
+     * the line.
+     */
+    private static double[] findLineCrossings(QCurve line, QCurve curve, double ylo, double yhi,
+                                              double[] roots) {
+        int rootCount = getLineCrossings(line, curve, roots);
+        if (rootCount < 0) {
+            return null;
+        }
+        int size = 0;
+        for (int a = 0; a < rootCount; a++) {
+            double t = roots[a];
+            if (t >= 0 && t <= 1) {
+                double y = curve.YforT(t);
+                if (y >= ylo && y <= yhi) {
+                    roots[size++] = y;
+                }
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(roots, 0, size);
+        return Arrays.copyOf(roots, size);
+    }
+
+    /**
+     * Store the parameters (of the curve) where a curve crosses or touches
+     * a line in roots. These may include values outside of [0, 1].
+     *
+     * @param roots an array of at least 4 elements. The coefficients of the
+     *              equation are stored here too, so no other array is needed.
+     * @return the number of parameters, or -1 if the curve lies on the line.
+     */
+    private static int getLineCrossings(QCurve line, QCurve curve, double[] roots) {
+        double dxl = line.x1 - line.x0;
+        double dyl = line.y1 - line.y0;
+        // (xC(t) - x0L) * dyL - (yC(t) - y0L) * dxL is zero where the
+        // curve crosses the line, so solve for its roots. The coefficients
+        // of xC(t) and yC(t) are their derivatives at t=0 divided by k!
+        double[] eqn = roots;
+        double factorial = 1;
+        for (int k = 0; k <= curve.order; k++) {
+            if (k > 1) {
+                factorial *= k;
+            }
+            double xk = curve.dXforT(0, k) / factorial;
+            double yk = curve.dYforT(0, k) / factorial;
+            if (k == 0) {
+                xk -= line.x0;
+                yk -= line.y0;
+            }
+            eqn[k] = xk * dyl - yk * dxl;
+        }
+        return curve.order == 2 ?
+                QuadCurve2D.solveQuadratic(eqn, roots) :
+                CubicCurve2D.solveCubic(eqn, roots);
+    }
+
+    /**
+     * Return true if a line separates the part of curve a from s0 to s1 and
+     * the part of curve b from t0 to t1 (with room to spare for rounding
+     * errors). Then no chord between two points of one part can meet a chord
+     * of the other part, so subdividing the curves can't find an intersection.
+     * <p>
+     * The lines that are tested are parallel to the chord of either part.
+     * The distance of each part from that line is a polynomial, so its
+     * exact range is found at the ends of the part and where its
+     * derivative is zero.
+     * </p>
+     */
+    static boolean isApart(QCurve a, double s0, double s1, QCurve b, double t0, double t1) {
+        double scale = Math.max(Math.max(Math.abs(a.xmin), Math.abs(a.xmax)),
+                Math.max(Math.abs(a.y0), Math.abs(a.y1)));
+        scale = Math.max(scale, Math.max(Math.max(Math.abs(b.xmin), Math.abs(b.xmax)),
+                Math.max(Math.abs(b.y0), Math.abs(b.y1))));
+        double tolerance = Math.max(scale * 1E-10, 1E-300);
+        return isApartFromChord(a, s0, s1, b, t0, t1, tolerance) ||
+                (a.order > 1 && isApartFromChord(b, t0, t1, a, s0, s1, tolerance));
+    }
+
+    /**
+     * Return true if a line parallel to the chord of curve a from s0 to s1
+     * separates that part of curve a from the part of curve b from t0 to t1.
+     */
+    private static boolean isApartFromChord(QCurve a, double s0, double s1, QCurve b, double t0, double t1,
+                                            double tolerance) {
+        double px = a.XforT(s0);
+        double py = a.YforT(s0);
+        double nx = py - a.YforT(s1);
+        double ny = a.XforT(s1) - px;
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length <= tolerance) {
+            return false;
+        }
+        nx /= length;
+        ny /= length;
+        double aMin = getMinDistance(a, s0, s1, px, py, nx, ny);
+        double aMax = -getMinDistance(a, s0, s1, px, py, -nx, -ny);
+        double bMin = getMinDistance(b, t0, t1, px, py, nx, ny);
+        if (bMin > aMax + tolerance) {
+            return true;
+        }
+        double bMax = -getMinDistance(b, t0, t1, px, py, -nx, -ny);
+        return bMax < aMin - tolerance;
+    }
+
+    /**
+     * Return the smallest signed distance of a curve from t0 to t1 from the
+     * line through (px, py) whose unit normal is (nx, ny).
+     */
+    private static double getMinDistance(QCurve c, double t0, double t1,
+                                         double px, double py, double nx, double ny) {
+        // the coefficients of the distance, like getLineCrossings
+        double g0 = nx * (c.dXforT(0, 0) - px) + ny * (c.dYforT(0, 0) - py);
+        double g1 = nx * c.dXforT(0, 1) + ny * c.dYforT(0, 1);
+        double g2 = 0, g3 = 0;
+        if (c.order > 1) {
+            g2 = (nx * c.dXforT(0, 2) + ny * c.dYforT(0, 2)) / 2;
+        }
+        if (c.order > 2) {
+            g3 = (nx * c.dXforT(0, 3) + ny * c.dYforT(0, 3)) / 6;
+        }
+        double min = Math.min(evaluate(g0, g1, g2, g3, t0), evaluate(g0, g1, g2, g3, t1));
+        // the derivative g1 + 2 g2 t + 3 g3 t^2 is zero at the other extrema
+        double qa = 3 * g3;
+        double qb = 2 * g2;
+        if (qa == 0) {
+            if (qb != 0) {
+                min = Math.min(min, evaluateWithin(g0, g1, g2, g3, -g1 / qb, t0, t1));
+            }
+        } else {
+            double d = qb * qb - 4 * qa * g1;
+            if (d >= 0) {
+                d = Math.sqrt(d);
+                min = Math.min(min, evaluateWithin(g0, g1, g2, g3, (-qb + d) / (2 * qa), t0, t1));
+                min = Math.min(min, evaluateWithin(g0, g1, g2, g3, (-qb - d) / (2 * qa), t0, t1));
+            }
+        }
+        return min;
+    }
+
+    private static double evaluate(double g0, double g1, double g2, double g3, double t) {
+        return g0 + t * (g1 + t * (g2 + t * g3));
+    }
+
+    /**
+     * Evaluate a polynomial at t if t is between t0 and t1, or return
+     * positive infinity.
+     */
+    private static double evaluateWithin(double g0, double g1, double g2, double g3, double t,
+                                         double t0, double t1) {
+        if (t > t0 && t < t1) {
+            return evaluate(g0, g1, g2, g3, t);
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return true if curve a comes before curve b in an arbitrary but
+     * consistent order.
+     */
+    private static boolean isBefore(QCurve a, QCurve b) {
+        if (a.y0 != b.y0) return a.y0 < b.y0;
+        if (a.x0 != b.x0) return a.x0 < b.x0;
+        if (a.y1 != b.y1) return a.y1 < b.y1;
+        if (a.x1 != b.x1) return a.x1 < b.x1;
+        if (a.xmin != b.xmin) return a.xmin < b.xmin;
+        if (a.xmax != b.xmax) return a.xmax < b.xmax;
+        return a.order < b.order;
+    }
+
+    /**
+     * Return the Bezier control points of a curve as (x, y) pairs.
+     */
+    private static double[] getControlPoints(QCurve curve) {
+        if (curve.order == 1) {
+            return new double[] { curve.x0, curve.y0, curve.x1, curve.y1 };
+        }
+        // the coefficients of the power basis are the derivatives at t=0
+        // divided by k!, and t=0 is the top of the curve
+        double x1 = curve.dXforT(0, 1);
+        double y1 = curve.dYforT(0, 1);
+        if (curve.order == 2) {
+            return new double[] {
+                    curve.x0, curve.y0,
+                    curve.x0 + x1 / 2, curve.y0 + y1 / 2,
+                    curve.x1, curve.y1
+            };
+        }
+        double x2 = curve.dXforT(0, 2) / 2;
+        double y2 = curve.dYforT(0, 2) / 2;
+        return new double[] {
+                curve.x0, curve.y0,
+                curve.x0 + x1 / 3, curve.y0 + y1 / 3,
+                curve.x0 + 2 * x1 / 3 + x2 / 3, curve.y0 + 2 * y1 / 3 + y2 / 3,
+                curve.x1, curve.y1
+        };
+    }
+
+    private final QCurve a, b;
+    private final double ylo, yhi;
+    private final double tolerance;
+    private final double leafSize;
+    private final double[] e = new double[4];
+    private double[][] buffers = new double[16][];
+    private int steps;
+    private double[] ys = new double[4];
+    private int size;
+
+    private QCurveIntersections(QCurve a, QCurve b, double ylo, double yhi,
+                                double tolerance, double leafSize) {
+        this.a = a;
+        this.b = b;
+        this.ylo = ylo;
+        this.yhi = yhi;
+        this.tolerance = tolerance;
+        this.leafSize = leafSize;
+    }
+
+    private double[] getYs() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(ys, 0, size);
+        // a tangent (or an intersection near a split) may be found more than once
+        int k = 1;
+        for (int i = 1; i < size; i++) {
+            if (ys[i] - ys[k - 1] > tolerance) {
+                ys[k++] = ys[i];
+            }
+        }
+        return Arrays.copyOf(ys, k);
+    }
+
+    /**
+     * Return an array to store a piece of a curve in at a given depth of
+     * the search. The curves switch roles at every depth, so every array at
+     * one depth stores pieces of the same curve.
+     */
+    private double[] getBuffer(int depth, int length) {
+        if (depth == buffers.length) {
+            buffers = Arrays.copyOf(buffers, depth * 2);
+        }
+        if (buffers[depth] == null) {
+            buffers[depth] = new double[length];
+        }
+        return buffers[depth];
+    }
+
+    /**
+     * Clip curve p against the fat line of curve q, and continue searching
+     * with their roles switched.
+     *
+     * @param depth the number of times the curves have switched roles. A
+     *              piece created at this depth is stored in the array for
+     *              depth + 1, so it doesn't overwrite p or q.
+     */
+    private void clip(double[] p, double[] q, int depth) {
+        if (++steps > MAX_STEPS) {
+            return;
+        }
+        int pn = p.length / 2 - 1;
+        int qn = q.length / 2 - 1;
+        double pxmin = p[0], pxmax = p[0];
+        for (int i = 2; i < p.length; i += 2) {
+            pxmin = Math.min(pxmin, p[i]);
+            pxmax = Math.max(pxmax, p[i]);
+        }
+        double qxmin = q[0], qxmax = q[0];
+        for (int i = 2; i < q.length; i += 2) {
+            qxmin = Math.min(qxmin, q[i]);
+            qxmax = Math.max(qxmax, q[i]);
+        }
+        // both curves are y-monotone, so their first and last points are their top and bottom
+        double pytop = p[1], pybot = p[2 * pn + 1];
+        double qytop = q[1], qybot = q[2 * qn + 1];
+        if (pxmin > qxmax + tolerance || qxmin > pxmax + tolerance ||
+                pytop > qybot + tolerance || qytop > pybot + tolerance ||
+                Math.max(pytop, qytop) > yhi || Math.min(pybot, qybot) < ylo) {
+            return;
+        }
+        double psize = Math.max(pxmax - pxmin, pybot - pytop);
+        double qsize = Math.max(qxmax - qxmin, qybot - qytop);
+        if (psize <= tolerance && qsize <= tolerance) {
+            add((Math.min(pytop, qytop) + Math.max(pybot, qybot)) / 2);
+            return;
+        }
+
+        // the fat line of q: the distance of every point of q from its chord
+        double dx = q[2 * qn] - q[0];
+        double dy = q[2 * qn + 1] - q[1];
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (qsize <= tolerance || length <= tolerance) {
+            // q is (nearly) a point, so it can't define a line. Split p instead.
+            split(p, q, psize, qsize, depth);
+            return;
+        }
+        double nx = -dy / length;
+        double ny = dx / length;
+        double dmin, dmax;
+        double d1 = nx * (q[2] - q[0]) + ny * (q[3] - q[1]);
+        if (qn == 1) {
+            dmin = dmax = 0;
+        } else if (qn == 2) {
+            // a quadratic curve is at most halfway to its control point
+            dmin = Math.min(0, d1 / 2);
+            dmax = Math.max(0, d1 / 2);
+        } else {
+            double d2 = nx * (q[4] - q[0]) + ny * (q[5] - q[1]);
+            double k = d1 * d2 > 0 ? 3.0 / 4.0 : 4.0 / 9.0;
+            dmin = k * Math.min(0, Math.min(d1, d2));
+            dmax = k * Math.max(0, Math.max(d1, d2));
+        }
+        dmin -= tolerance;
+        dmax += tolerance;
+
+        // intersect the convex hull of (i / pn, distance of p[i]) with the fat line
+        for (int i = 0; i <= pn; i++) {
+            e[i] = nx * (p[2 * i] - q[0]) + ny * (p[2 * i + 1] - q[1]);
+        }
+        double umin = 2, umax = -1;
+        for (int i = 0; i <= pn; i++) {
+            double ui = (double) i / pn;
+            if (e[i] >= dmin && e[i] <= dmax) {
+                umin = Math.min(umin, ui);
+                umax = Math.max(umax, ui);
+            }
+            for (int j = i + 1; j <= pn; j++) {
+                double uj = (double) j / pn;
+                for (int bound = 0; bound < 2; bound++) {
+                    double d = bound == 0 ? dmin : dmax;
+                    if ((e[i] - d) * (e[j] - d) < 0) {
+                        double u = ui + (d - e[i]) * (uj - ui) / (e[j] - e[i]);
+                        umin = Math.min(umin, u);
+                        umax = Math.max(umax, u);
+                    }
+                }
+            }
+        }
+        if (umin > umax) {
+            return;
+        }
+        umin = Math.max(0, umin);
+        umax = Math.min(1, umax);
+
+        if (umax - umin > MAX_CLIP_RATIO && psize > tolerance) {
+            split(p, q, psize, qsize, depth);
+        } else {
+            clip(q, getSubCurve(p, umin, umax, getBuffer(depth + 1, p.length)), depth + 1);
+        }
+    }
+
+    /**
+     * Split p in half and search each half against q, unless both curves
+     * are small enough to test directly.
+     */
+    private void split(double[] p, double[] q, double psize, double qsize, int depth) {
+        if (psize <= leafSize && qsize <= leafSize) {
+            testOrder(p, q);
+            return;
+        }
+        clip(q, getSubCurve(p, 0, .5, getBuffer(depth + 1, p.length)), depth + 1);
+        clip(q, getSubCurve(p, .5, 1, getBuffer(depth + 1, p.length)), depth + 1);
+    }
+
+    /**
+     * If two small pieces of the curves change order where they overlap
+     * then record where. The pieces are approximated by their chords.
+     */
+    private void testOrder(double[] p, double[] q) {
+        int pn = p.length - 2;
+        int qn = q.length - 2;
+        double y0 = Math.max(ylo, Math.max(p[1], q[1]));
+        double y1 = Math.min(yhi, Math.min(p[pn + 1], q[qn + 1]));
+        if (y0 >= y1) {
+            return;
+        }
+        double f0 = getChordX(p, y0) - getChordX(q, y0);
+        double f1 = getChordX(p, y1) - getChordX(q, y1);
+        if (f0 == 0) {
+            add(y0);
+        } else if (f1 == 0) {
+            // (this is usually a shared endpoint)
+            add(y1);
+        } else if ((f0 < 0) != (f1 < 0)) {
+            // the chords cross
+            add(y0 + (y1 - y0) * f0 / (f0 - f1));
+        }
+    }
+
+    /**
+     * Return the x value of the chord of a piece of a curve at y.
+     */
+    private static double getChordX(double[] p, double y) {
+        int n = p.length - 2;
+        double dy = p[n + 1] - p[1];
+        if (dy <= 0) {
+            return p[0];
+        }
+        return p[0] + (p[n] - p[0]) * (y - p[1]) / dy;
+    }
+
+    private void add(double y) {
+        if (size == ys.length) {
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        ys[size++] = y;
+    }
+
+    /**
+     * Store the control points of the part of a curve from u0 to u1 in r.
+     */
+    private static double[] getSubCurve(double[] p, double u0, double u1, double[] r) {
+        System.arraycopy(p, 0, r, 0, p.length);
+        int n = r.length / 2 - 1;
+        if (u1 < 1) {
+            // de Casteljau: keep the left part
+            for (int k = 1; k <= n; k++) {
+                for (int i = n; i >= k; i--) {
+                    r[2 * i] = r[2 * i - 2] + (r[2 * i] - r[2 * i - 2]) * u1;
+                    r[2 * i + 1] = r[2 * i - 1] + (r[2 * i + 1] - r[2 * i - 1]) * u1;
+                }
+            }
+        }
+        if (u0 > 0) {
+            // de Casteljau: keep the right part
+            double t = u0 / u1;
+            for (int k = 1; k <= n; k++) {
+                for (int i = 0; i <= n - k; i++) {
+                    r[2 * i] = r[2 * i] + (r[2 * i + 2] - r[2 * i]) * t;
+                    r[2 * i + 1] = r[2 * i + 1] + (r[2 * i + 3] - r[2 * i + 1]) * t;
+                }
+            }
+        }
+        return r;
+    }
+}
@@ -27,23 +27,39 @@
 package com.pump.awt.geom;
 
 final class QCurveLink {
-    public final QCurve curve;
-    public final int etag;
+    public QCurve curve;
+    public int etag;
     public QCurveLink next;
 
     private double ytop;
     private double ybot;
 
     public QCurveLink(QCurve curve, double ystart, double yend, int etag) {
+        reset(curve, ystart, yend, etag);
+    }
+
+    /**
+     * Reinitialize this link so a QSweepContext can reuse it.
+     */
+    void reset(QCurve curve, double ystart, double yend, int etag) {
         this.curve = curve;
         this.ytop = ystart;
         this.ybot = yend;
         this.etag = etag;
+        this.next = null;
         if (ytop < curve.y0 || ybot > curve.y1) {
             throw new InternalError("bad curvelink ["+ytop+"=>"+ybot+"] for "+curve);
         }
     }
 
+    /**
+     * Release the references this link holds while it waits to be reused.
+     */
+    void clear() {
+        curve = null;
+        next = null;
+    }
+
     public boolean absorb(QCurveLink link) {
         return absorb(link.curve, link.ytop, link.ybot, link.etag);
     }
@@ -67,10 +83,7 @@ final class QCurveLink {
     }
 
     public QCurve getSubCurve() {
-        if (ytop == curve.y0 && ybot == curve.y1) {
-            return curve.getWithDirection(etag == 1);
-        }
-        return curve.getSubCurve(ytop, ybot, etag == 1);
+        return curve.getFragment(ytop, ybot, etag == 1);
     }
 
     public QCurve getMoveto() {
@@ -0,0 +1,87 @@
+package com.pump.awt.geom;
+
+/**
+ * This merges consecutive curves of a subpath that can be described by
+ * one curve.
+ * <p>
+ * Every operation cuts curves wherever another edge begins, ends or
+ * crosses them, and those pieces remain separate curves in the result even
+ * if the edge that cut them is later removed. So an area that accumulates
+ * many operations can have several times more curves than it needs, and
+ * every later operation pays for each of them. Two kinds of neighbors are
+ * merged:
+ * </p>
+ * <ul>
+ * <li>Adjacent fragments of the same curve (see
+ * {@link QCurve#getFragment(double, double, boolean)}) are replaced by
+ * one fragment of that curve. Fragments only remember their curve until
+ * the operation that cut them ends, so fragments from earlier operations
+ * are not rejoined.</li>
+ * <li>Adjacent lines are replaced by one line if the vertex between them
+ * is exactly on that line.</li>
+ * </ul>
+ * <p>
+ * Curves are only merged if the end of the first curve is exactly the
+ * start of the second curve, and if they travel in the same vertical
+ * direction. A merged fragment is calculated from the original curve, and
+ * a merged line passes exactly through the vertex it replaces. But between
+ * its vertices a merged line is calculated from different (rounded)
+ * endpoints than its pieces, so it can differ from them by a few ulps.
+ * </p>
+ */
+final class QCurveMerge {
+
+    private QCurveMerge() {
+    }
+
+    /**
+     * Add a curve to a list of subpaths, merging it with the last curve of
+     * the list if possible.
+     */
+    static void add(ExposedArrayWrapper<QCurve> curves, QCurve c) {
+        if (curves.elementCount > 0) {
+            QCurve last = curves.elementData[curves.elementCount - 1];
+            QCurve merged = merge(last, c);
+            if (merged != null) {
+                curves.elementData[curves.elementCount - 1] = merged;
+                return;
+            }
+        }
+        curves.add(c);
+    }
+
+    /**
+     * Return a list of subpaths with every curve that can be merged with
+     * its neighbor merged, or the original list if no curves can be merged.
+     */
+    static ExposedArrayWrapper<QCurve> compact(ExposedArrayWrapper<QCurve> curves) {
+        ExposedArrayWrapper<QCurve> compacted = new ExposedArrayWrapper<>(QCurve.class, curves.elementCount);
+        for (int a = 0; a < curves.elementCount; a++) {
+            add(compacted, curves.elementData[a]);
+        }
+        return compacted.elementCount < curves.elementCount ? compacted : curves;
+    }
+
+    /**
+     * Return one curve that is equivalent to c1 followed by c2, or null.
+     */
+    static QCurve merge(QCurve c1, QCurve c2) {
+        if (c1.order == 0 || c2.order == 0 || c1.isIncreasingT != c2.isIncreasingT) {
+            return null;
+        }
+        // the upper curve ends where the lower curve begins
+        QCurve upper = c1.isIncreasingT ? c1 : c2;
+        QCurve lower = c1.isIncreasingT ? c2 : c1;
+        if (upper.y1 != lower.y0 || upper.x1 != lower.x0) {
+            return null;
+        }
+        if (upper.source != null && upper.source == lower.source) {
+            return upper.source.getFragment(upper.y0, lower.y1, c1.isIncreasingT);
+        }
+        if (upper.order == 1 && lower.order == 1 &&
+                QOrder1.XforY(upper.x0, upper.y0, lower.x1, lower.y1, upper.y1) == upper.x1) {
+            return new QOrder1(upper.x0, upper.y0, lower.x1, lower.y1, c1.isIncreasingT);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,413 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.NoSuchElementException;
+
+/**
+ * This stores a list of QCurves in primitive arrays.
+ * <p>
+ * Each curve is stored as one byte (its order, plus a flag if its
+ * isIncreasingT field is true) followed by its coordinates in the order the
+ * QCurve constructors take them: x0, y0, [cx0, cy0, [cx1, cy1,]] x1, y1.
+ * (A QOrder0 only stores x0 and y0.) This uses a fraction of the memory of
+ * the equivalent QCurve objects, and this is immutable so it can be shared.
+ * </p>
+ */
+final class QCurvePack {
+
+    private static final byte ORDER_MASK = 3;
+    private static final byte INCREASING_T = 4;
+
+    /**
+     * Store a list of curves.
+     */
+    static QCurvePack create(ExposedArrayWrapper<QCurve> curves) {
+        int size = curves.elementCount;
+        byte[] types = new byte[size];
+        int coordCount = 0;
+        for (int a = 0; a < size; a++) {
+            coordCount += getCoordCount(curves.elementData[a].order);
+        }
+        double[] coords = new double[coordCount];
+        int offset = 0;
+        for (int a = 0; a < size; a++) {
+            QCurve c = curves.elementData[a];
+            types[a] = (byte) (c.order | (c.isIncreasingT ? INCREASING_T : 0));
+            coords[offset++] = c.x0;
+            coords[offset++] = c.y0;
+            if (c.order == 2) {
+                QOrder2 quad = (QOrder2) c;
+                coords[offset++] = quad.cx0;
+                coords[offset++] = quad.cy0;
+            } else if (c.order == 3) {
+                QOrder3 cubic = (QOrder3) c;
+                coords[offset++] = cubic.cx0;
+                coords[offset++] = cubic.cy0;
+                coords[offset++] = cubic.cx1;
+                coords[offset++] = cubic.cy1;
+            }
+            if (c.order > 0) {
+                coords[offset++] = c.x1;
+                coords[offset++] = c.y1;
+            }
+        }
+        return new QCurvePack(types, coords);
+    }
+
+    private static int getCoordCount(int order) {
+        return order == 0 ? 2 : 2 * order + 2;
+    }
+
+    private final byte[] types;
+    private final double[] coords;
+
+    private QCurvePack(byte[] types, double[] coords) {
+        this.types = types;
+        this.coords = coords;
+    }
+
+    /**
+     * Return the number of curves.
+     */
+    int size() {
+        return types.length;
+    }
+
+    /**
+     * Create new QCurve objects for every curve.
+     */
+    ExposedArrayWrapper<QCurve> toCurves() {
+        ExposedArrayWrapper<QCurve> curves = new ExposedArrayWrapper<>(QCurve.class, types.length);
+        int offset = 0;
+        for (byte type : types) {
+            curves.elementData[curves.elementCount++] = createCurve(type, offset);
+            offset += getCoordCount(type & ORDER_MASK);
+        }
+        return curves;
+    }
+
+    private QCurve createCurve(byte type, int i) {
+        boolean isIncreasingT = (type & INCREASING_T) != 0;
+        double[] c = coords;
+        switch (type & ORDER_MASK) {
+            case 0:
+                return new QOrder0(c[i], c[i + 1]);
+            case 1:
+                return new QOrder1(c[i], c[i + 1], c[i + 2], c[i + 3], isIncreasingT);
+            case 2:
+                return new QOrder2(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5], isIncreasingT);
+            default:
+                return new QOrder3(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5],
+                        c[i + 6], c[i + 7], isIncreasingT);
+        }
+    }
+
+    boolean isPolygonal() {
+        for (byte type : types) {
+            if ((type & ORDER_MASK) > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of subpaths (moveto curves).
+     */
+    int getSubpathCount() {
+        int count = 0;
+        for (byte type : types) {
+            if ((type & ORDER_MASK) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the bounds of the curves, as QCurve#enlarge calculates them.
+     */
+    Rectangle2D getBounds() {
+        Rectangle2D r = new Rectangle2D.Double();
+        if (types.length == 0) {
+            return r;
+        }
+        r.setRect(coords[0], coords[1], 0, 0);
+        int offset = 0;
+        for (byte type : types) {
+            int order = type & ORDER_MASK;
+            if (order <= 1) {
+                r.add(coords[offset], coords[offset + 1]);
+                r.add(coords[offset + 2 * order], coords[offset + 2 * order + 1]);
+            } else {
+                // extrema need the curve's coefficients
+                createCurve(type, offset).enlarge(r);
+            }
+            offset += getCoordCount(order);
+        }
+        return r;
+    }
+
+    /**
+     * Return the number of curves that a ray from (x, y) to the left crosses,
+     * as QCurve#crossingsFor calculates it.
+     */
+    int crossingsFor(double x, double y) {
+        int crossings = 0;
+        int offset = 0;
+        for (byte type : types) {
+            int order = type & ORDER_MASK;
+            int end = offset + getCoordCount(order);
+            if (order > 0 && y >= coords[offset + 1] && y < coords[end - 1]) {
+                double xmin = coords[offset];
+                double xmax = xmin;
+                for (int i = offset + 2; i < end; i += 2) {
+                    xmin = Math.min(xmin, coords[i]);
+                    xmax = Math.max(xmax, coords[i]);
+                }
+                if (x < xmax && (x < xmin || x < XforY(type, offset, y))) {
+                    crossings++;
+                }
+            }
+            offset = end;
+        }
+        return crossings;
+    }
+
+    private double XforY(byte type, int offset, double y) {
+        if ((type & ORDER_MASK) == 1) {
+            double x0 = coords[offset];
+            double y0 = coords[offset + 1];
+            double x1 = coords[offset + 2];
+            double y1 = coords[offset + 3];
+            if (x0 == x1 || y <= y0) {
+                return x0;
+            }
+            if (y >= y1) {
+                return x1;
+            }
+            return (x0 + (y - y0) * (x1 - x0) / (y1 - y0));
+        }
+        return createCurve(type, offset).XforY(y);
+    }
+
+    /**
+     * Return a transformed copy of these curves, or null if the transform
+     * can't be applied to each curve independently. This only supports
+     * transforms that scale and translate without reflecting the
+     * orientation of subpaths.
+     */
+    QCurvePack transform(AffineTransform t) {
+        if (Math.abs(t.getShearX()) >= .0000001 || Math.abs(t.getShearY()) >= .0000001) {
+            return null;
+        }
+        double scaleX = t.getScaleX();
+        double scaleY = t.getScaleY();
+        if (!(scaleX * scaleY > 0)) {
+            return null;
+        }
+        double translateX = t.getTranslateX();
+        double translateY = t.getTranslateY();
+        byte[] newTypes = new byte[types.length];
+        double[] newCoords = new double[coords.length];
+        int offset = 0;
+        for (int a = 0; a < types.length; a++) {
+            byte type = types[a];
+            int order = type & ORDER_MASK;
+            int end = offset + getCoordCount(order);
+            if (scaleY > 0 || order == 0) {
+                for (int i = offset; i < end; i += 2) {
+                    newCoords[i] = scaleX * coords[i] + translateX;
+                    newCoords[i + 1] = scaleY * coords[i + 1] + translateY;
+                }
+                newTypes[a] = type;
+            } else {
+                // flipping vertically reverses the order of the points
+                for (int i = offset, j = end - 2; i < end; i += 2, j -= 2) {
+                    newCoords[j] = scaleX * coords[i] + translateX;
+                    newCoords[j + 1] = scaleY * coords[i + 1] + translateY;
+                }
+                newTypes[a] = (byte) (type ^ INCREASING_T);
+            }
+            if (order > 0) {
+                double y0 = newCoords[offset + 1];
+                double y1 = newCoords[end - 1];
+                if ((y0 == y1) != (coords[offset + 1] == coords[end - 1])) {
+                    // rounding error created (or removed) a horizontal curve
+                    return null;
+                }
+                // clamp control points the same way the QCurve constructors do
+                if (order == 2) {
+                    newCoords[offset + 3] = Math.max(y0, Math.min(y1, newCoords[offset + 3]));
+                } else if (order == 3) {
+                    newCoords[offset + 3] = Math.max(y0, newCoords[offset + 3]);
+                    newCoords[offset + 5] = Math.min(y1, newCoords[offset + 5]);
+                }
+            }
+            offset = end;
+        }
+        return new QCurvePack(newTypes, newCoords);
+    }
+
+    /**
+     * Pass every segment to a QPathConsumer, the same way
+     * QAreaImpl#forEachSegment does for QCurve objects.
+     */
+    void forEachSegment(QPathConsumer consumer, AffineTransform at) {
+        double prevX = 0;
+        double prevY = 0;
+        int offset = 0;
+        for (int a = 0; a < types.length; a++) {
+            byte type = types[a];
+            int order = type & ORDER_MASK;
+            int i = offset;
+            offset += getCoordCount(order);
+            if (order == 0) {
+                if (a > 0) {
+                    consumer.closePath();
+                }
+                prevX = coords[i];
+                prevY = coords[i + 1];
+                QPathEmitter.moveTo(consumer, at, prevX, prevY);
+                continue;
+            }
+            boolean isIncreasingT = (type & INCREASING_T) != 0;
+            int start = isIncreasingT ? i : offset - 2;
+            int end = isIncreasingT ? offset - 2 : i;
+            if (coords[start] != prevX || coords[start + 1] != prevY) {
+                QPathEmitter.lineTo(consumer, at, coords[start], coords[start + 1]);
+            }
+            if (order == 1) {
+                QPathEmitter.lineTo(consumer, at, coords[end], coords[end + 1]);
+            } else if (order == 2) {
+                QPathEmitter.quadTo(consumer, at, coords[i + 2], coords[i + 3],
+                        coords[end], coords[end + 1]);
+            } else if (isIncreasingT) {
+                QPathEmitter.cubicTo(consumer, at, coords[i + 2], coords[i + 3],
+                        coords[i + 4], coords[i + 5], coords[end], coords[end + 1]);
+            } else {
+                QPathEmitter.cubicTo(consumer, at, coords[i + 4], coords[i + 5],
+                        coords[i + 2], coords[i + 3], coords[end], coords[end + 1]);
+            }
+            prevX = coords[end];
+            prevY = coords[end + 1];
+        }
+        if (types.length > 0) {
+            consumer.closePath();
+        }
+    }
+
+    PathIterator getPathIterator(AffineTransform at) {
+        return new PackIterator(at);
+    }
+
+    /**
+     * This iterates over the packed curves the same way a QAreaIterator
+     * iterates over QCurve objects.
+     */
+    private class PackIterator implements PathIterator {
+        private final double[] dcoords = new double[6];
+        private final AffineTransform transform;
+        private int index;
+        private int offset;
+
+        /**
+         * True if the previous curve ended away from the start of the
+         * current curve, so we need to return a lineto or a close.
+         */
+        private boolean junction;
+
+        PackIterator(AffineTransform transform) {
+            this.transform = transform;
+        }
+
+        @Override
+        public int getWindingRule() {
+            return WIND_NON_ZERO;
+        }
+
+        @Override
+        public boolean isDone() {
+            return !junction && index >= types.length;
+        }
+
+        @Override
+        public void next() {
+            if (junction) {
+                junction = false;
+                return;
+            }
+            byte type = types[index];
+            int order = type & ORDER_MASK;
+            int endIndex = (type & INCREASING_T) != 0 ? offset + 2 * order : offset;
+            double prevEndX = coords[endIndex];
+            double prevEndY = coords[endIndex + 1];
+            offset += getCoordCount(order);
+            index++;
+            if (index < types.length) {
+                type = types[index];
+                order = type & ORDER_MASK;
+                int startIndex = (type & INCREASING_T) != 0 ? offset : offset + 2 * order;
+                junction = order == 0 || prevEndX != coords[startIndex] ||
+                        prevEndY != coords[startIndex + 1];
+            } else {
+                junction = true;
+            }
+        }
+
+        @Override
+        public int currentSegment(float[] coords) {
+            int segtype = currentSegment(dcoords);
+            int numpoints = (segtype == SEG_CLOSE ? 0
+                    : (segtype == SEG_QUADTO ? 2
+                    : (segtype == SEG_CUBICTO ? 3
+                    : 1)));
+            for (int i = 0; i < numpoints * 2; i++) {
+                coords[i] = (float) dcoords[i];
+            }
+            return segtype;
+        }
+
+        @Override
+        public int currentSegment(double[] dst) {
+            if (!junction && index >= types.length) {
+                throw new NoSuchElementException("area iterator out of bounds");
+            }
+            byte type = index < types.length ? types[index] : 0;
+            int order = type & ORDER_MASK;
+            boolean isIncreasingT = (type & INCREASING_T) != 0;
+            int segtype;
+            int numpoints;
+            if (junction) {
+                if (index >= types.length || order == 0) {
+                    return SEG_CLOSE;
+                }
+                int startIndex = isIncreasingT ? offset : offset + 2 * order;
+                dst[0] = coords[startIndex];
+                dst[1] = coords[startIndex + 1];
+                segtype = SEG_LINETO;
+                numpoints = 1;
+            } else if (order == 0) {
+                dst[0] = coords[offset];
+                dst[1] = coords[offset + 1];
+                segtype = SEG_MOVETO;
+                numpoints = 1;
+            } else {
+                // copy every point after the first point in the direction of travel
+                for (int i = 0; i < order; i++) {
+                    int src = isIncreasingT ? offset + 2 * (i + 1) : offset + 2 * (order - 1 - i);
+                    dst[2 * i] = coords[src];
+                    dst[2 * i + 1] = coords[src + 1];
+                }
+                segtype = order == 1 ? SEG_LINETO : (order == 2 ? SEG_QUADTO : SEG_CUBICTO);
+                numpoints = order;
+            }
+            if (transform != null) {
+                transform.transform(dst, 0, dst, 0, numpoints);
+            }
+            return segtype;
+        }
+    }
+}
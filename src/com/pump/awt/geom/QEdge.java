@@ -31,12 +31,35 @@ final class QEdge implements Comparable<QEdge> {
     static final int INIT_PARTS = 4;
     static final int GROW_PARTS = 10;
 
-    public final QCurve curve;
-    public final int curveTag;
+    public QCurve curve;
+    public int curveTag;
     public int edgeTag;
     double activey;
     int equivalence;
 
+    /*
+     * The range of y values of the curve this edge covers. This is
+     * usually the entire curve, but a QSweepBand may only pass part of
+     * a curve to the sweep.
+     */
+    double ytop;
+    double ybot;
+    double xtop;
+
+    /*
+     * If the curve is a line then these are copies of its endpoints, so
+     * two lines can be compared without visiting their curves.
+     */
+    boolean isLine;
+    double lx0, ly0, lx1, ly1;
+
+    /*
+     * If this is true then this edge was split where it crosses other
+     * edges (see QCrossingEvents), so it can only change its order
+     * relative to another split edge where one of them begins or ends.
+     */
+    boolean splitAtCrossings;
+
     public QEdge(QCurve c, int curveTag) {
         this(c, curveTag, QAreaOp.ETAG_IGNORE);
     }
@@ -45,6 +68,57 @@ final class QEdge implements Comparable<QEdge> {
         this.curve = c;
         this.curveTag = curveTag;
         this.edgeTag = edgeTag;
+        this.ytop = c.y0;
+        this.ybot = c.y1;
+        this.xtop = c.x0;
+        initLine(c);
+    }
+
+    public QEdge(QCurve c, int curveTag, double ytop, double ybot) {
+        reset(c, curveTag, ytop, ybot);
+    }
+
+    /**
+     * Reinitialize this edge so a QSweepContext can reuse it.
+     */
+    void reset(QCurve c, int curveTag, double ytop, double ybot) {
+        this.curve = c;
+        this.curveTag = curveTag;
+        this.edgeTag = QAreaOp.ETAG_IGNORE;
+        this.ytop = ytop;
+        this.ybot = ybot;
+        this.xtop = ytop == c.y0 ? c.x0 : c.XforY(ytop);
+        initLine(c);
+        splitAtCrossings = false;
+        activey = 0;
+        equivalence = 0;
+        lastEdge = null;
+        keyY0 = Double.NaN;
+    }
+
+    private void initLine(QCurve c) {
+        isLine = c.order == 1;
+        if (isLine) {
+            lx0 = c.x0;
+            ly0 = c.y0;
+            lx1 = c.x1;
+            ly1 = c.y1;
+        }
+    }
+
+    /**
+     * Return the x value of this edge's curve at y.
+     */
+    double XforY(double y) {
+        return isLine ? QOrder1.XforY(lx0, ly0, lx1, ly1, y) : curve.XforY(y);
+    }
+
+    /**
+     * Release the references this edge holds while it waits to be reused.
+     */
+    void clear() {
+        curve = null;
+        lastEdge = null;
     }
 
     public int getEquivalence() {
@@ -60,6 +134,13 @@ final class QEdge implements Comparable<QEdge> {
     private double lastLimit;
 
     public int compareTo(QEdge other, double[] yrange) {
+        // an edge may end above the bottom of its curve
+        if (yrange[1] > ybot) {
+            yrange[1] = ybot;
+        }
+        if (yrange[1] > other.ybot) {
+            yrange[1] = other.ybot;
+        }
         if (other == lastEdge && yrange[0] < lastLimit) {
             if (yrange[1] > lastLimit) {
                 yrange[1] = lastLimit;
@@ -72,8 +153,49 @@ final class QEdge implements Comparable<QEdge> {
             }
             return 0-other.lastResult;
         }
+        if (splitAtCrossings && other.splitAtCrossings) {
+            // neither edge should cross the other in this row, so their
+            // order anywhere in the row is their order for the whole row
+            double y = (yrange[0] + yrange[1]) / 2;
+            double x1 = XforY(y);
+            double x2 = other.XforY(y);
+            if (!curve.fairlyClose(x1, x2)) {
+                // but the search can miss a crossing, so this is only
+                // trusted if the ends of the row agree
+                int ret = x1 < x2 ? -1 : 1;
+                if (isOrderedAt(other, yrange[0], ret) && isOrderedAt(other, yrange[1], ret)) {
+                    lastEdge = other;
+                    lastLimit = yrange[1];
+                    lastResult = ret;
+                    return ret;
+                }
+            }
+        }
         //long start = System.currentTimeMillis();
-        int ret = curve.compareTo(other.curve, yrange);
+        int ret;
+        double limit = Double.NEGATIVE_INFINITY;
+        double ytop = yrange[0];
+        if (curve.xmax < other.curve.xmin || curve.xmin > other.curve.xmax) {
+            ret = curve.xmax < other.curve.xmin ? -1 : 1;
+        } else if ((ret = compareKeys(other, yrange)) != 0) {
+            // The edges are apart in this row. If either one is a curve,
+            // the row still ends where a curve turns, exactly as it does
+            // after a full comparison, so the keys don't change any rows.
+            if (!isLine || !other.isLine) {
+                ret = curve.compareCurves(other.curve, yrange, true);
+            }
+        } else if (isLine && other.isLine) {
+            ret = QOrder1.compareLines(lx0, ly0, lx1, ly1,
+                    other.lx0, other.ly0, other.lx1, other.ly1, yrange);
+            if (ret != 0) {
+                // this order holds until the lines cross, not just for this row
+                double y = QOrder1.getCrossing(lx0, ly0, lx1, ly1,
+                        other.lx0, other.ly0, other.lx1, other.ly1);
+                limit = y > ytop ? y : Math.min(ybot, other.ybot);
+            }
+        } else {
+            ret = curve.compareTo(other.curve, yrange);
+        }
         //long end = System.currentTimeMillis();
         /*
         System.out.println("compare: "+
@@ -85,11 +207,85 @@ final class QEdge implements Comparable<QEdge> {
                            " in "+(end-start)+"ms");
          */
         lastEdge = other;
-        lastLimit = yrange[1];
+        lastLimit = Math.max(yrange[1], limit);
         lastResult = ret;
         return ret;
     }
 
+    /**
+     * Return true if this edge and another edge are in the given order at y,
+     * or if they are too close at y to tell.
+     */
+    private boolean isOrderedAt(QEdge other, double y, int order) {
+        double x1 = XforY(y);
+        double x2 = other.XforY(y);
+        return curve.fairlyClose(x1, x2) || (x1 < x2 ? -1 : 1) == order;
+    }
+
+    /*
+     * The range of x values this edge covers from keyY0 to keyY1. These
+     * keys are calculated at most once per row, so edges that are clearly
+     * apart in a row are ordered without searching for an intersection.
+     */
+    private double keyY0 = Double.NaN, keyY1, keyXmin, keyXmax;
+
+    /**
+     * Return -1 or 1 if this edge is entirely left or right of another edge
+     * in a row, or 0 if the x values they cover in the row overlap.
+     */
+    private int compareKeys(QEdge other, double[] yrange) {
+        updateKey(yrange);
+        other.updateKey(yrange);
+        // edges that are (almost) touching are left to the exact comparison
+        if (keyXmax < other.keyXmin && !curve.fairlyClose(keyXmax, other.keyXmin)) {
+            return -1;
+        }
+        if (keyXmin > other.keyXmax && !curve.fairlyClose(keyXmin, other.keyXmax)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Calculate the range of x values this edge covers in a row, unless it
+     * is already known.
+     */
+    private void updateKey(double[] yrange) {
+        double y0 = yrange[0];
+        double y1 = yrange[1];
+        if (keyY0 == y0 && keyY1 >= y1) {
+            // the range of a larger part of this row still applies
+            return;
+        }
+        keyY0 = y0;
+        keyY1 = y1;
+        double x0 = XforY(y0);
+        double x1 = XforY(y1);
+        keyXmin = Math.min(x0, x1);
+        keyXmax = Math.max(x0, x1);
+        if (!isLine) {
+            // include the x values where the curve is vertical if they may
+            // be inside this row (TforY is approximate, so this errs on the
+            // side of a wider range)
+            double t0 = curve.TforY(y0) - KEY_T_MARGIN;
+            double t1 = curve.TforY(y1) + KEY_T_MARGIN;
+            double t = 0;
+            while ((t = curve.nextVertical(t, 1)) < 1) {
+                if (t >= t0 && t <= t1) {
+                    double x = curve.XforT(t);
+                    keyXmin = Math.min(keyXmin, x);
+                    keyXmax = Math.max(keyXmax, x);
+                }
+            }
+        }
+    }
+
+    /**
+     * How far outside of a row (in t) a curve's vertical tangent can be
+     * and still be included in the row's x range.
+     */
+    private static final double KEY_T_MARGIN = 1E-9;
+
     public void record(double yend, int edgeTag) {
         this.activey = yend;
         this.edgeTag = edgeTag;
@@ -102,7 +298,8 @@ final class QEdge implements Comparable<QEdge> {
     public String toString() {
         return ("QEdge["+curve+
                 ", "+
-                (curveTag == QAreaOp.CTAG_LEFT ? "L" : "R")+
+                (curveTag == QAreaOp.CTAG_LEFT ? "L" :
+                        (curveTag == QAreaOp.CTAG_RIGHT ? "R" : Integer.toString(curveTag)))+
                 ", "+
                 (edgeTag == QAreaOp.ETAG_ENTER ? "I" :
                         (edgeTag == QAreaOp.ETAG_EXIT ? "O" : "N"))+
@@ -111,10 +308,9 @@ final class QEdge implements Comparable<QEdge> {
 
     @Override
     public int compareTo(QEdge o2) {
-        QCurve c2 = o2.curve;
         double v1, v2;
-        if ((v1 = curve.y0) == (v2 = c2.y0)) {
-            if ((v1 = curve.x0) == (v2 = c2.x0)) {
+        if ((v1 = ytop) == (v2 = o2.ytop)) {
+            if ((v1 = xtop) == (v2 = o2.xtop)) {
                 return 0;
             }
         }
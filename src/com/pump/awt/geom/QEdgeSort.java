@@ -0,0 +1,187 @@
+package com.pump.awt.geom;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This sorts edges in the order of {@link QEdge#compareTo(QEdge)} (by the
+ * y value and then the x value of their tops) with a least significant
+ * digit radix sort.
+ * <p>
+ * Each edge's top y value is converted to a long whose unsigned order is
+ * the order of the doubles, so the radix passes never dereference an edge.
+ * Edges with the same top y value are then ordered by their top x values.
+ * Like Arrays.sort, this sort is stable: edges with the same top remain in
+ * their original order.
+ * </p>
+ */
+final class QEdgeSort {
+
+    /**
+     * Fewer edges than this are sorted with Arrays.sort, because the radix
+     * sort's passes over its buckets cost more than a comparison sort of a
+     * few edges.
+     */
+    static final int MIN_RADIX_SORT_SIZE = 1 << 10;
+
+    /**
+     * If fewer than this fraction of the edges are above the edge before
+     * them then the edges are mostly in order already (such as the curves
+     * of a QAreaImpl, which are resolved from top to bottom), and
+     * Arrays.sort is faster because it merges the runs that are in order.
+     */
+    private static final double MAX_PRESORTED_DESCENTS = 1.0 / 3.0;
+
+    private static final int DIGIT_BITS = 11;
+    private static final int BUCKETS = 1 << DIGIT_BITS;
+    private static final int DIGITS = (64 + DIGIT_BITS - 1) / DIGIT_BITS;
+
+    /**
+     * This orders curves the way {@link QEdge#compareTo(QEdge)} orders the
+     * edges that span them: by the y value and then the x value of their tops.
+     */
+    static final Comparator<QCurve> CURVE_ORDER = (c1, c2) -> {
+        double v1, v2;
+        if ((v1 = c1.y0) == (v2 = c2.y0)) {
+            if ((v1 = c1.x0) == (v2 = c2.x0)) {
+                return 0;
+            }
+        }
+        return v1 < v2 ? -1 : 1;
+    };
+
+    private QEdgeSort() {
+    }
+
+    /**
+     * Return the curves (excluding movetos) in the order the sweep sorts
+     * their edges in. Like {@link #sort(QEdge[], int, int, boolean)} this
+     * is stable, so curves with the same top remain in their original order.
+     */
+    static QCurve[] sortCurves(ExposedArrayWrapper<QCurve> curves) {
+        QCurve[] sorted = new QCurve[curves.elementCount];
+        int size = 0;
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.order > 0) {
+                sorted[size++] = c;
+            }
+        }
+        sorted = Arrays.copyOf(sorted, size);
+        // the curves of a QAreaImpl are mostly in order already, so this
+        // mostly merges runs
+        Arrays.sort(sorted, CURVE_ORDER);
+        return sorted;
+    }
+
+    /**
+     * Merge two arrays that are sorted by {@link #CURVE_ORDER}. Where
+     * curves are equal the curves of the first array come first, so this
+     * is the same as sorting the concatenation of both arrays.
+     */
+    static QCurve[] merge(QCurve[] first, QCurve[] second) {
+        QCurve[] merged = new QCurve[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < first.length && j < second.length) {
+            if (CURVE_ORDER.compare(second[j], first[i]) < 0) {
+                merged[k++] = second[j++];
+            } else {
+                merged[k++] = first[i++];
+            }
+        }
+        System.arraycopy(first, i, merged, k, first.length - i);
+        System.arraycopy(second, j, merged, k + first.length - i, second.length - j);
+        return merged;
+    }
+
+    /**
+     * Sort the edges between two indices.
+     *
+     * @param useRadixSort if false then this uses Arrays.sort.
+     */
+    static void sort(QEdge[] edges, int fromIndex, int toIndex, boolean useRadixSort) {
+        int size = toIndex - fromIndex;
+        if (!useRadixSort || size < MIN_RADIX_SORT_SIZE || isPresorted(edges, fromIndex, toIndex)) {
+            Arrays.sort(edges, fromIndex, toIndex);
+            return;
+        }
+
+        long[] keys = new long[size];
+        QEdge[] items = new QEdge[size];
+        for (int a = 0; a < size; a++) {
+            QEdge e = edges[fromIndex + a];
+            keys[a] = getKey(e.ytop);
+            items[a] = e;
+        }
+
+        // count every digit in one pass, so digits that are the same for
+        // every edge (such as the exponents of similar values) are skipped
+        int[][] counts = new int[DIGITS][BUCKETS];
+        for (int a = 0; a < size; a++) {
+            long key = keys[a];
+            for (int d = 0; d < DIGITS; d++) {
+                counts[d][(int) (key >>> (d * DIGIT_BITS)) & (BUCKETS - 1)]++;
+            }
+        }
+
+        long[] keys2 = new long[size];
+        QEdge[] items2 = new QEdge[size];
+        for (int d = 0; d < DIGITS; d++) {
+            int[] count = counts[d];
+            int shift = d * DIGIT_BITS;
+            if (count[(int) (keys[0] >>> shift) & (BUCKETS - 1)] == size) {
+                continue;
+            }
+            int total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                int c = count[b];
+                count[b] = total;
+                total += c;
+            }
+            for (int a = 0; a < size; a++) {
+                int i = count[(int) (keys[a] >>> shift) & (BUCKETS - 1)]++;
+                keys2[i] = keys[a];
+                items2[i] = items[a];
+            }
+            long[] t = keys;
+            keys = keys2;
+            keys2 = t;
+            QEdge[] u = items;
+            items = items2;
+            items2 = u;
+        }
+
+        // order edges that start at the same y value by their x values
+        int runStart = 0;
+        for (int a = 1; a <= size; a++) {
+            if (a == size || keys[a] != keys[runStart]) {
+                if (a - runStart > 1) {
+                    Arrays.sort(items, runStart, a);
+                }
+                runStart = a;
+            }
+        }
+        System.arraycopy(items, 0, edges, fromIndex, size);
+    }
+
+    private static boolean isPresorted(QEdge[] edges, int fromIndex, int toIndex) {
+        int descents = 0;
+        for (int a = fromIndex + 1; a < toIndex; a++) {
+            if (edges[a].ytop < edges[a - 1].ytop) {
+                descents++;
+            }
+        }
+        return descents < (toIndex - fromIndex) * MAX_PRESORTED_DESCENTS;
+    }
+
+    /**
+     * Return a long whose unsigned order is the order of a double.
+     */
+    static long getKey(double v) {
+        // adding zero turns -0.0 into 0.0, because they are equal edge tops
+        long bits = Double.doubleToRawLongBits(v + 0.0);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+}
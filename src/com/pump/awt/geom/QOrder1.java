@@ -41,14 +41,7 @@ final class QOrder1 extends QCurve {
 
     @Override
     public double XforY(double y) {
-        if (x0 == x1 || y <= y0) {
-            return x0;
-        }
-        if (y >= y1) {
-            return x1;
-        }
-        // assert(y0 != y1); /* No horizontal lines... */
-        return (x0 + (y - y0) * (x1 - x0) / (y1 - y0));
+        return XforY(x0, y0, x1, y1, y);
     }
 
     @Override
@@ -167,88 +160,110 @@ final class QOrder1 extends QCurve {
         return new QOrder1(x0, y0, x1, y1, !isIncreasingT);
     }
 
-    @Override
-    public int compareTo(QCurve other, double[] yrange) {
-        if (!(other instanceof QOrder1)) {
-            return super.compareTo(other, yrange);
+    /**
+     * Return the x value of a line at y (the same as {@link #XforY(double)}),
+     * where (x0, y0) is the top of the line and (x1, y1) is the bottom.
+     */
+    static double XforY(double x0, double y0, double x1, double y1, double y) {
+        if (x0 == x1 || y <= y0) {
+            return x0;
+        }
+        if (y >= y1) {
+            return x1;
         }
-        QOrder1 c1 = (QOrder1) other;
+        // assert(y0 != y1); /* No horizontal lines... */
+        return (x0 + (y - y0) * (x1 - x0) / (y1 - y0));
+    }
+
+    /**
+     * Compare two lines the way {@link QCurve#compareTo(QCurve, double[])}
+     * compares curves: this returns -1, 0 or 1 if line A is left of,
+     * equal to or right of line B, and it limits yrange[1] to the y value
+     * where the lines cross.
+     * <p>
+     * Each line is described by its top point (x0, y0) and its bottom point
+     * (x1, y1). The crossing is calculated relative to the top of the range
+     * both lines share, so it stays accurate when the coordinates are large
+     * compared to the distance between the lines.
+     * </p>
+     */
+    static int compareLines(double ax0, double ay0, double ax1, double ay1,
+                            double bx0, double by0, double bx1, double by1,
+                            double[] yrange) {
         if (yrange[1] <= yrange[0]) {
             throw new InternalError("yrange already screwed up...");
         }
-        yrange[1] = Math.min(Math.min(yrange[1], y1), c1.y1);
+        yrange[1] = Math.min(Math.min(yrange[1], ay1), by1);
         if (yrange[1] <= yrange[0]) {
             throw new InternalError("backstepping from "+yrange[0]+" to "+yrange[1]);
         }
-        if (xmax <= c1.xmin) {
-            return (xmin == c1.xmax) ? 0 : -1;
+        double axmin, axmax, bxmin, bxmax;
+        if (ax0 < ax1) {
+            axmin = ax0;
+            axmax = ax1;
+        } else {
+            axmin = ax1;
+            axmax = ax0;
+        }
+        if (bx0 < bx1) {
+            bxmin = bx0;
+            bxmax = bx1;
+        } else {
+            bxmin = bx1;
+            bxmax = bx0;
+        }
+        if (axmax <= bxmin) {
+            return (axmin == bxmax) ? 0 : -1;
         }
-        if (xmin >= c1.xmax) {
+        if (axmin >= bxmax) {
             return 1;
         }
-        /*
-         * If "this" is curve A and "other" is curve B, then...
-         * xA(y) = x0A + (y - y0A) (x1A - x0A) / (y1A - y0A)
-         * xB(y) = x0B + (y - y0B) (x1B - x0B) / (y1B - y0B)
-         * xA(y) == xB(y)
-         * x0A + (y - y0A) (x1A - x0A) / (y1A - y0A)
-         *    == x0B + (y - y0B) (x1B - x0B) / (y1B - y0B)
-         * 0 == x0A (y1A - y0A) (y1B - y0B) + (y - y0A) (x1A - x0A) (y1B - y0B)
-         *    - x0B (y1A - y0A) (y1B - y0B) - (y - y0B) (x1B - x0B) (y1A - y0A)
-         * 0 == (x0A - x0B) (y1A - y0A) (y1B - y0B)
-         *    + (y - y0A) (x1A - x0A) (y1B - y0B)
-         *    - (y - y0B) (x1B - x0B) (y1A - y0A)
-         * If (dxA == x1A - x0A), etc...
-         * 0 == (x0A - x0B) * dyA * dyB
-         *    + (y - y0A) * dxA * dyB
-         *    - (y - y0B) * dxB * dyA
-         * 0 == (x0A - x0B) * dyA * dyB
-         *    + y * dxA * dyB - y0A * dxA * dyB
-         *    - y * dxB * dyA + y0B * dxB * dyA
-         * 0 == (x0A - x0B) * dyA * dyB
-         *    + y * dxA * dyB - y * dxB * dyA
-         *    - y0A * dxA * dyB + y0B * dxB * dyA
-         * 0 == (x0A - x0B) * dyA * dyB
-         *    + y * (dxA * dyB - dxB * dyA)
-         *    - y0A * dxA * dyB + y0B * dxB * dyA
-         * y == ((x0A - x0B) * dyA * dyB
-         *       - y0A * dxA * dyB + y0B * dxB * dyA)
-         *    / (-(dxA * dyB - dxB * dyA))
-         * y == ((x0A - x0B) * dyA * dyB
-         *       - y0A * dxA * dyB + y0B * dxB * dyA)
-         *    / (dxB * dyA - dxA * dyB)
-         */
-        double dxa = x1 - x0;
-        double dya = y1 - y0;
-        double dxb = c1.x1 - c1.x0;
-        double dyb = c1.y1 - c1.y0;
-        double denom = dxb * dya - dxa * dyb;
-        double y;
-        if (denom != 0) {
-            double num = ((x0 - c1.x0) * dya * dyb
-                    - y0 * dxa * dyb
-                    + c1.y0 * dxb * dya);
-            y = num / denom;
+        double ytop = Math.max(ay0, by0);
+        double y = getCrossing(ax0, ay0, ax1, ay1, bx0, by0, bx1, by1);
+        if (!Double.isNaN(y)) {
             if (y <= yrange[0]) {
                 // intersection is above us
                 // Use bottom-most common y for comparison
-                y = Math.min(y1, c1.y1);
-            } else {
-                // intersection is below the top of our range
-                if (y < yrange[1]) {
-                    // If intersection is in our range, adjust valid range
-                    yrange[1] = y;
-                }
-                // Use top-most common y for comparison
-                y = Math.max(y0, c1.y0);
+                y = Math.min(ay1, by1);
+                return orderof(XforY(ax0, ay0, ax1, ay1, y), XforY(bx0, by0, bx1, by1, y));
             }
-        } else {
-            // lines are parallel, choose any common y for comparison
-            // Note - prefer an endpoint for speed of calculating the X
-            // (see shortcuts in Order1.XforY())
-            y = Math.max(y0, c1.y0);
+            // intersection is below the top of our range
+            if (y < yrange[1]) {
+                // If intersection is in our range, adjust valid range
+                yrange[1] = y;
+            }
+        }
+        // Use top-most common y for comparison (if the lines are
+        // parallel then any common y works, and this is an endpoint)
+        return orderof(XforY(ax0, ay0, ax1, ay1, ytop), XforY(bx0, by0, bx1, by1, ytop));
+    }
+
+    /**
+     * Return the y value where two (extended) lines cross, or NaN if they
+     * are parallel. Each line is described the same way it is for
+     * {@link #compareLines(double, double, double, double, double, double, double, double, double[])}.
+     */
+    static double getCrossing(double ax0, double ay0, double ax1, double ay1,
+                              double bx0, double by0, double bx1, double by1) {
+        /*
+         * If "ytop" is the top of the range both lines share, then
+         * xA(y) - xB(y) == (xA(ytop) - xB(ytop))
+         *                  + (y - ytop) * (dxA / dyA - dxB / dyB)
+         * and that is zero where
+         * y == ytop + (xA(ytop) - xB(ytop)) * dyA * dyB / (dxB * dyA - dxA * dyB)
+         */
+        double ytop = Math.max(ay0, by0);
+        double xa = XforY(ax0, ay0, ax1, ay1, ytop);
+        double xb = XforY(bx0, by0, bx1, by1, ytop);
+        double dxa = ax1 - ax0;
+        double dya = ay1 - ay0;
+        double dxb = bx1 - bx0;
+        double dyb = by1 - by0;
+        double denom = dxb * dya - dxa * dyb;
+        if (denom == 0) {
+            return Double.NaN;
         }
-        return orderof(XforY(y), c1.XforY(y));
+        return ytop + (xa - xb) * dya * dyb / denom;
     }
 
     @Override
@@ -244,15 +244,31 @@ final class QOrder3 extends QCurve {
         ycoeff1 = (cy0 - y0) * 3.0;
         ycoeff2 = (cy1 - cy0 - cy0 + y0) * 3.0;
         ycoeff3 = y1 - (cy1 - cy0) * 3.0 - y0;
-        YforT1 = YforT2 = YforT3 = y0;
     }
 
-    private double TforY1;
-    private double YforT1;
-    private double TforY2;
-    private double YforT2;
-    private double TforY3;
-    private double YforT3;
+    /**
+     * Recent results of TforY for the QOrder3s one thread uses. Each thread
+     * has its own cache, so a QOrder3 can be used by several threads at once
+     * without synchronizing (or allocating) to remember its results.
+     * <p>
+     * This is a direct-mapped table: a result replaces whatever result
+     * hashed to the same slot, so a lookup is always a single comparison.
+     * </p>
+     */
+    private static final class TforYCache {
+        static final int SIZE = 256;
+
+        final QOrder3[] curves = new QOrder3[SIZE];
+        final double[] y = new double[SIZE];
+        final double[] t = new double[SIZE];
+
+        static int getIndex(QOrder3 curve, double y) {
+            int hash = System.identityHashCode(curve) * 31 + Double.hashCode(y);
+            return (hash ^ (hash >>> 16)) & (SIZE - 1);
+        }
+    }
+
+    private static final ThreadLocal<TforYCache> TFORY_CACHE = ThreadLocal.withInitial(TforYCache::new);
 
     /*
      * Solve the cubic whose coefficients are in the a,b,c,d fields and
@@ -265,9 +281,11 @@ final class QOrder3 extends QCurve {
     public double TforY(double y) {
         if (y <= y0) return 0;
         if (y >= y1) return 1;
-        if (y == YforT1) return TforY1;
-        if (y == YforT2) return TforY2;
-        if (y == YforT3) return TforY3;
+        TforYCache cache = TFORY_CACHE.get();
+        int index = TforYCache.getIndex(this, y);
+        if (cache.curves[index] == this && cache.y[index] == y) {
+            return cache.t[index];
+        }
         // From Numerical Recipes, 5.6, Quadratic and Cubic Equations
         if (ycoeff3 == 0.0) {
             // The cubic degenerated to quadratic (or line or ...).
@@ -284,14 +302,14 @@ final class QOrder3 extends QCurve {
         double a_3 = a / 3.0;
         double t;
         if (R2 < Q3) {
-            double[] thetaLUT = getThetaLUT(R / Math.sqrt(Q3));
+            double z = R / Math.sqrt(Q3);
             Q = -2.0 * Math.sqrt(Q);
-            t = refineTforY(y, Q * thetaLUT[0] - a_3);
+            t = refineTforY(y, Q * getTheta(z, 0) - a_3);
             if (t < 0) {
-                t = refineTforY(y, Q * thetaLUT[1] - a_3);
+                t = refineTforY(y, Q * getTheta(z, 1) - a_3);
             }
             if (t < 0) {
-                t = refineTforY(y, Q * thetaLUT[2] - a_3);
+                t = refineTforY(y, Q * getTheta(z, 2) - a_3);
             }
         } else {
             boolean neg = (R < 0.0);
@@ -326,24 +344,39 @@ final class QOrder3 extends QCurve {
             }
         }
         if (t >= 0) {
-            TforY3 = TforY2;
-            YforT3 = YforT2;
-            TforY2 = TforY1;
-            YforT2 = YforT1;
-            TforY1 = t;
-            YforT1 = y;
+            cache.curves[index] = this;
+            cache.y[index] = y;
+            cache.t[index] = t;
         }
         return t;
     }
 
 
-    static double[][] thetaLUT;
-    static double thetaLUTdivisor;
+    /**
+     * This is built when this class loads so it can be safely shared by
+     * multiple threads.
+     */
+    static final double[][] thetaLUT = createThetaLUT(1024);
+    static final double thetaLUTdivisor = 2.0 / ((double)thetaLUT.length);
+
+    private static double[][] createThetaLUT(int size) {
+        double[][] lut = new double[size][3];
+        for(int a = 0; a<lut.length; a++) {
+            double k = ((double)a) / ((double)(lut.length)) * 2 - 1;
 
-    double[] interpolationRow = new double[3];
+            double theta = Math.acos(k);
+
+            lut[a] = new double[] {
+                    Math.cos(theta / 3.0),
+                    Math.cos((theta + Math.PI * 2.0)/ 3.0),
+                    Math.cos((theta - Math.PI * 2.0)/ 3.0)
+            };
+        }
+        return lut;
+    }
 
     /**
-     * Return a cached LUT approximating three values:
+     * Return one of three values from a cached LUT:
      * Math.cos(Math.acos(z) / 3.0)
      * Math.cos((Math.acos(z) + Math.PI * 2.0)/ 3.0)
      * Math.cos((Math.acos(z) - Math.PI * 2.0)/ 3.0)
@@ -354,27 +387,12 @@ final class QOrder3 extends QCurve {
      * </p>
      *
      * @param z an input that is (R / sqrt(Q*Q*Q))
+     * @param column which of the three values to return
      */
-    private double[] getThetaLUT(double z) {
-        if (thetaLUT == null) {
-            thetaLUT = new double[1024][3];
-            thetaLUTdivisor = 2.0 / ((double)thetaLUT.length);
-            for(int a = 0; a<thetaLUT.length; a++) {
-                double k = ((double)a) / ((double)(thetaLUT.length)) * 2 - 1;
-
-                double theta = Math.acos(k);
-
-                thetaLUT[a] = new double[] {
-                        Math.cos(theta / 3.0),
-                        Math.cos((theta + Math.PI * 2.0)/ 3.0),
-                        Math.cos((theta - Math.PI * 2.0)/ 3.0)
-                };
-            }
-        }
-
+    private static double getTheta(double z, int column) {
         int index = (int) ( (z + 1) / thetaLUTdivisor);
         if (index >= thetaLUT.length - 1) {
-            return thetaLUT[thetaLUT.length - 1];
+            return thetaLUT[thetaLUT.length - 1][column];
         } else {
             // We'd be pretty close if we just did this:
             // return thetaLUT[index];
@@ -386,12 +404,9 @@ final class QOrder3 extends QCurve {
             // double ceil = floor + thetaLUTdivisor;
             // double t = (z - floor) / thetaLUTdivisor;
             double t = (z + 1) / thetaLUTdivisor - index;
-            for(int a = 0; a < interpolationRow.length; a++) {
-                double v1 = thetaLUT[index][a];
-                double v2 = thetaLUT[index + 1][a];
-                interpolationRow[a] = v1 + (v2 - v1) * t;
-            }
-            return interpolationRow;
+            double v1 = thetaLUT[index][column];
+            double v2 = thetaLUT[index + 1][column];
+            return v1 + (v2 - v1) * t;
         }
     }
 
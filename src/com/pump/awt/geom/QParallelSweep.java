@@ -0,0 +1,163 @@
+package com.pump.awt.geom;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This sweeps horizontal bands of edges on separate threads.
+ * <p>
+ * Each band receives the part of every edge that overlaps it, and it is swept
+ * with its own copy of the QAreaOp. The rows each band identifies are then
+ * resolved into chains in order on the calling thread, so the resulting
+ * subpaths are the same as the subpaths a single sweep produces.
+ * </p>
+ */
+final class QParallelSweep {
+
+    /**
+     * Sweeps with fewer edges than this are not divided into bands.
+     */
+    static final int MIN_EDGE_COUNT = 4096;
+
+    /**
+     * The minimum number of edges per band.
+     */
+    static final int MIN_EDGES_PER_BAND = 1024;
+
+    /**
+     * The links of every row of a band, stored end to end.
+     */
+    static final class Rows {
+        final ExposedArrayWrapper<QCurveLink> links = new ExposedArrayWrapper<>(QCurveLink.class);
+        double[] ystart = new double[16];
+        double[] yend = new double[16];
+        int[] linkEnd = new int[16];
+        int size;
+
+        void add(double ystart, double yend, ExposedArrayWrapper<QCurveLink> rowLinks) {
+            if (size == linkEnd.length) {
+                this.ystart = Arrays.copyOf(this.ystart, size * 2);
+                this.yend = Arrays.copyOf(this.yend, size * 2);
+                linkEnd = Arrays.copyOf(linkEnd, size * 2);
+            }
+            for (int a = 0; a < rowLinks.elementCount; a++) {
+                links.add(rowLinks.elementData[a]);
+            }
+            this.ystart[size] = ystart;
+            this.yend[size] = yend;
+            linkEnd[size] = links.elementCount;
+            size++;
+        }
+    }
+
+    private static class BandTask extends RecursiveTask<Rows> {
+        private static final long serialVersionUID = 1;
+
+        private final QAreaOp op;
+        private final ExposedArrayWrapper<QEdge> edges;
+        private final double bandTop, bandBottom;
+
+        BandTask(QAreaOp op, ExposedArrayWrapper<QEdge> edges, double bandTop, double bandBottom) {
+            this.op = op;
+            this.edges = edges;
+            this.bandTop = bandTop;
+            this.bandBottom = bandBottom;
+        }
+
+        @Override
+        protected Rows compute() {
+            ExposedArrayWrapper<QEdge> bandEdges = new ExposedArrayWrapper<>(QEdge.class);
+            for (int a = 0; a < edges.elementCount; a++) {
+                QEdge e = edges.elementData[a];
+                double y0 = Math.max(e.ytop, bandTop);
+                double y1 = Math.min(e.ybot, bandBottom);
+                if (y0 < y1) {
+                    QEdge bandEdge = new QEdge(e.curve, e.curveTag, y0, y1);
+                    bandEdge.splitAtCrossings = e.splitAtCrossings;
+                    bandEdges.add(bandEdge);
+                }
+            }
+            Rows rows = new Rows();
+            op.sweepRows(bandEdges, bandTop, bandBottom, rows, null);
+            return rows;
+        }
+    }
+
+    /**
+     * Sweep edges in parallel and resolve their links into subcurves and chains.
+     *
+     * @param ytop the y value the sweep starts at (or negative infinity).
+     * @param ybot the y value the sweep stops at (or positive infinity).
+     * @param context the context of the calling thread. The bands do not
+     *                use it, because they run on other threads.
+     */
+    static void sweep(QAreaOp op, ForkJoinPool pool, ExposedArrayWrapper<QEdge> edges,
+                      double ytop, double ybot, QSweepContext context) {
+        double[] limits = getBandLimits(pool, edges, ytop, ybot);
+        if (limits.length < 3) {
+            op.sweepRows(edges, ytop, ybot, null, context);
+            return;
+        }
+
+        BandTask[] tasks = new BandTask[limits.length - 1];
+        for (int a = 0; a < tasks.length; a++) {
+            QAreaOp worker = op.createWorker();
+            worker.setRadixSort(op.isRadixSort());
+            worker.polygonal = op.polygonal;
+            tasks[a] = new BandTask(worker, edges, limits[a], limits[a + 1]);
+            pool.submit(tasks[a]);
+        }
+
+        // resolve each band as soon as it (and every band above it) is ready
+        ExposedArrayWrapper<QCurveLink> subcurves = context.subcurves;
+        ExposedArrayWrapper<QChainEnd> chains = context.chains;
+        ExposedArrayWrapper<QCurveLink> rowLinks = context.links;
+        double lastY = ytop;
+        for (BandTask task : tasks) {
+            Rows rows = task.join();
+            int linkStart = 0;
+            for (int a = 0; a < rows.size; a++) {
+                if (rows.ystart[a] > lastY) {
+                    // there were no active edges between lastY and ystart
+                    QAreaOp.finalizeSubCurves(subcurves, chains);
+                }
+                rowLinks.clear();
+                for (int b = linkStart; b < rows.linkEnd[a]; b++) {
+                    rowLinks.add(rows.links.elementData[b]);
+                }
+                QAreaOp.resolveLinks(subcurves, chains, rowLinks, context);
+                linkStart = rows.linkEnd[a];
+                lastY = rows.yend[a];
+            }
+        }
+    }
+
+    /**
+     * Return the top of every band followed by the bottom of the last band.
+     * The bands are chosen so each band contains the tops of a similar
+     * number of edges.
+     */
+    private static double[] getBandLimits(ForkJoinPool pool, ExposedArrayWrapper<QEdge> edges,
+                                          double ytop, double ybot) {
+        int edgeCount = edges.elementCount;
+        int bandCount = Math.min(4 * pool.getParallelism(), edgeCount / MIN_EDGES_PER_BAND);
+        double[] tops = new double[edgeCount];
+        for (int a = 0; a < edgeCount; a++) {
+            tops[a] = edges.elementData[a].ytop;
+        }
+        Arrays.sort(tops);
+
+        double[] limits = new double[bandCount + 1];
+        int size = 0;
+        limits[size++] = ytop;
+        for (int a = 1; a < bandCount; a++) {
+            double y = tops[(int) ((long) a * edgeCount / bandCount)];
+            if (y > limits[size - 1] && y < ybot) {
+                limits[size++] = y;
+            }
+        }
+        limits[size++] = ybot;
+        return Arrays.copyOf(limits, size);
+    }
+}
@@ -0,0 +1,22 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * This receives the segments of a path one at a time. This is a
+ * push-based alternative to a {@link java.awt.geom.PathIterator}: the
+ * segments are passed as primitive arguments, so no arrays are needed.
+ *
+ * @see QAreaImpl#forEachSegment(QPathConsumer, AffineTransform)
+ */
+public interface QPathConsumer {
+    void moveTo(double x, double y);
+
+    void lineTo(double x, double y);
+
+    void quadTo(double cx, double cy, double x, double y);
+
+    void cubicTo(double cx0, double cy0, double cx1, double cy1, double x, double y);
+
+    void closePath();
+}
@@ -0,0 +1,58 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * These static methods pass segments to a QPathConsumer after applying an
+ * optional AffineTransform, without allocating any arrays or points.
+ */
+final class QPathEmitter {
+
+    private QPathEmitter() {
+    }
+
+    private static double transformX(AffineTransform at, double x, double y) {
+        return at.getScaleX() * x + at.getShearX() * y + at.getTranslateX();
+    }
+
+    private static double transformY(AffineTransform at, double x, double y) {
+        return at.getShearY() * x + at.getScaleY() * y + at.getTranslateY();
+    }
+
+    static void moveTo(QPathConsumer consumer, AffineTransform at, double x, double y) {
+        if (at == null) {
+            consumer.moveTo(x, y);
+        } else {
+            consumer.moveTo(transformX(at, x, y), transformY(at, x, y));
+        }
+    }
+
+    static void lineTo(QPathConsumer consumer, AffineTransform at, double x, double y) {
+        if (at == null) {
+            consumer.lineTo(x, y);
+        } else {
+            consumer.lineTo(transformX(at, x, y), transformY(at, x, y));
+        }
+    }
+
+    static void quadTo(QPathConsumer consumer, AffineTransform at,
+                       double cx, double cy, double x, double y) {
+        if (at == null) {
+            consumer.quadTo(cx, cy, x, y);
+        } else {
+            consumer.quadTo(transformX(at, cx, cy), transformY(at, cx, cy),
+                    transformX(at, x, y), transformY(at, x, y));
+        }
+    }
+
+    static void cubicTo(QPathConsumer consumer, AffineTransform at,
+                        double cx0, double cy0, double cx1, double cy1, double x, double y) {
+        if (at == null) {
+            consumer.cubicTo(cx0, cy0, cx1, cy1, x, y);
+        } else {
+            consumer.cubicTo(transformX(at, cx0, cy0), transformY(at, cx0, cy0),
+                    transformX(at, cx1, cy1), transformY(at, cx1, cy1),
+                    transformX(at, x, y), transformY(at, x, y));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This copies the segments of a PathIterator into arrays, so a large path
+ * can be split into y-monotone curves on several threads.
+ * <p>
+ * The segments are divided into consecutive ranges, and each range is split
+ * into curves on its own thread. Each range starts with the current point and
+ * the start of the current subpath as a single pass over the path would see
+ * them, so the concatenated curves are exactly the curves
+ * {@link QAreaImpl#readCurves(PathIterator)} produces.
+ * </p>
+ */
+final class QPathSnapshot {
+
+    /**
+     * Paths with fewer segments than this are split into curves on the
+     * calling thread.
+     */
+    static final int MIN_PARALLEL_SEGMENT_COUNT = 16384;
+
+    /**
+     * The minimum number of segments each thread splits into curves.
+     */
+    static final int MIN_SEGMENTS_PER_TASK = 4096;
+
+    /**
+     * Return true if a path should be copied and split into curves on
+     * several threads. Smaller paths are faster to read directly from their
+     * PathIterator on the calling thread.
+     */
+    static boolean isParallel(int segmentCount, ForkJoinPool pool) {
+        return pool != null && pool.getParallelism() > 1 && segmentCount >= MIN_PARALLEL_SEGMENT_COUNT;
+    }
+
+    /**
+     * Copy the segments of a path.
+     *
+     * @param estimatedSegmentCount the expected number of segments. This
+     *                              is only used to size the arrays.
+     */
+    static QPathSnapshot create(PathIterator pi, int estimatedSegmentCount) {
+        QPathSnapshot snapshot = new QPathSnapshot(pi.getWindingRule(),
+                Math.max(estimatedSegmentCount, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY));
+        double[] segment = new double[6];
+        while (!pi.isDone()) {
+            int type = pi.currentSegment(segment);
+            snapshot.add(type, segment);
+            pi.next();
+        }
+        return snapshot;
+    }
+
+    final int windingRule;
+    private byte[] types;
+    private double[] coords;
+    private int segmentCount;
+    private int coordCount;
+
+    private QPathSnapshot(int windingRule, int capacity) {
+        this.windingRule = windingRule;
+        types = new byte[capacity];
+        coords = new double[capacity * 2];
+    }
+
+    private void add(int type, double[] segment) {
+        int size = getCoordinateCount(type);
+        if (segmentCount == types.length) {
+            types = Arrays.copyOf(types, segmentCount * 2);
+        }
+        if (coordCount + size > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coords.length * 2, coordCount + size));
+        }
+        types[segmentCount++] = (byte) type;
+        System.arraycopy(segment, 0, coords, coordCount, size);
+        coordCount += size;
+    }
+
+    private static int getCoordinateCount(int type) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Return the number of segments in this path.
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Split this path into y-monotone curves (without resolving its
+     * winding), the same way {@link QAreaImpl#readCurves(PathIterator)} does.
+     *
+     * @param pool an optional pool used to split large paths on several threads.
+     * @param reductionCount an optional array whose first element is
+     *                       incremented for every quadratic or cubic segment
+     *                       that is stored as a lower degree curve.
+     */
+    ExposedArrayWrapper<QCurve> readCurves(ForkJoinPool pool, int[] reductionCount) {
+        int taskCount = 1;
+        if (isParallel(segmentCount, pool)) {
+            taskCount = Math.min(pool.getParallelism() * 4, segmentCount / MIN_SEGMENTS_PER_TASK);
+        }
+        if (taskCount < 2) {
+            ReadTask task = new ReadTask(0, segmentCount, 0, new double[4]);
+            ExposedArrayWrapper<QCurve> curves = task.compute();
+            addReductions(task, reductionCount);
+            return curves;
+        }
+
+        // Find the current point and the start of the current subpath
+        // where each task begins.
+        ReadTask[] tasks = new ReadTask[taskCount];
+        double[] state = new double[4];
+        int segmentIndex = 0;
+        int coordIndex = 0;
+        for (int a = 0; a < taskCount; a++) {
+            int end = (int) ((long) segmentCount * (a + 1) / taskCount);
+            tasks[a] = new ReadTask(segmentIndex, end, coordIndex, state.clone());
+            for (; segmentIndex < end; segmentIndex++) {
+                int type = types[segmentIndex];
+                int size = getCoordinateCount(type);
+                if (type == PathIterator.SEG_MOVETO) {
+                    state[0] = state[2] = coords[coordIndex];
+                    state[1] = state[3] = coords[coordIndex + 1];
+                } else if (type == PathIterator.SEG_CLOSE) {
+                    state[0] = state[2];
+                    state[1] = state[3];
+                } else {
+                    state[0] = coords[coordIndex + size - 2];
+                    state[1] = coords[coordIndex + size - 1];
+                }
+                coordIndex += size;
+            }
+        }
+        for (int a = 1; a < taskCount; a++) {
+            pool.submit(tasks[a]);
+        }
+        ExposedArrayWrapper<QCurve> curves = tasks[0].compute();
+        addReductions(tasks[0], reductionCount);
+        for (int a = 1; a < taskCount; a++) {
+            ExposedArrayWrapper<QCurve> result = tasks[a].join();
+            for (int b = 0; b < result.elementCount; b++) {
+                curves.add(result.elementData[b]);
+            }
+            addReductions(tasks[a], reductionCount);
+        }
+        return curves;
+    }
+
+    private static void addReductions(ReadTask task, int[] reductionCount) {
+        if (reductionCount != null) {
+            reductionCount[0] += task.reductions;
+        }
+    }
+
+    /**
+     * This splits segments[start, end) into curves.
+     */
+    private class ReadTask extends RecursiveTask<ExposedArrayWrapper<QCurve>> {
+        private static final long serialVersionUID = 1;
+
+        private final int start, end, coordStart;
+
+        /**
+         * The current point and the start of the current subpath before
+         * the first segment of this task.
+         */
+        private final double[] state;
+
+        /**
+         * The number of segments this task stored as lower degree curves.
+         */
+        int reductions;
+
+        ReadTask(int start, int end, int coordStart, double[] state) {
+            this.start = start;
+            this.end = end;
+            this.coordStart = coordStart;
+            this.state = state;
+        }
+
+        @Override
+        protected ExposedArrayWrapper<QCurve> compute() {
+            // Most segments become one curve (only curves with a vertical
+            // extremum are divided), so this rarely needs to grow.
+            ExposedArrayWrapper<QCurve> curves = new ExposedArrayWrapper<>(QCurve.class,
+                    Math.max(end - start + (end - start) / 8, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY));
+            // see QAreaImpl.readCurves for the size of this array
+            double[] segment = new double[23];
+            double curx = state[0], cury = state[1];
+            double movx = state[2], movy = state[3];
+            int coordIndex = coordStart;
+            for (int a = start; a < end; a++) {
+                int type = types[a];
+                int size = getCoordinateCount(type);
+                System.arraycopy(coords, coordIndex, segment, 0, size);
+                coordIndex += size;
+                switch (type) {
+                    case PathIterator.SEG_MOVETO:
+                        QCurve.insertLine(curves, curx, cury, movx, movy);
+                        curx = movx = segment[0];
+                        cury = movy = segment[1];
+                        QCurve.insertMove(curves, movx, movy);
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        QCurve.insertLine(curves, curx, cury, segment[0], segment[1]);
+                        curx = segment[0];
+                        cury = segment[1];
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        double quadx = segment[2];
+                        double quady = segment[3];
+                        if (QCurve.insertQuad(curves, curx, cury, segment)) {
+                            reductions++;
+                        }
+                        curx = quadx;
+                        cury = quady;
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        double cubicx = segment[4];
+                        double cubicy = segment[5];
+                        if (QCurve.insertCubic(curves, curx, cury, segment)) {
+                            reductions++;
+                        }
+                        curx = cubicx;
+                        cury = cubicy;
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        QCurve.insertLine(curves, curx, cury, movx, movy);
+                        curx = movx;
+                        cury = movy;
+                        break;
+                }
+            }
+            if (end == segmentCount) {
+                QCurve.insertLine(curves, curx, cury, movx, movy);
+            }
+            return curves;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.pump.awt.geom;
+
+import java.util.Arrays;
+
+/**
+ * This sweeps edges whose curves are all lines, which is the case when both
+ * operands of a {@link QAreaOp} are polygonal.
+ * <p>
+ * This is the same sweep as {@link QAreaOp#sweepRows(ExposedArrayWrapper, double, double, QParallelSweep.Rows, QSweepContext)},
+ * and it produces exactly the same links, but the edges are copied into
+ * primitive arrays first. Each row compares lines with the closed-form
+ * crossing of {@link QOrder1#compareLines(double, double, double, double, double, double, double, double, double[])}
+ * without visiting QEdge or QCurve objects, and the active edges are
+ * reordered as indices. The only objects this creates are the links of the
+ * result.
+ * </p>
+ */
+final class QPolygonSweep {
+
+    /*
+     * The doubles of each edge: the endpoints of its line, its minimum and
+     * maximum x, the range of y values it covers, the y value it was last
+     * recorded until, the limit of its last comparison and the x values
+     * at the top and bottom of the last row its key was calculated for
+     * (see QEdge.compareKeys).
+     */
+    private static final int X0 = 0, Y0 = 1, X1 = 2, Y1 = 3, XMIN = 4, XMAX = 5, YTOP = 6, YBOT = 7,
+            ACTIVEY = 8, LAST_LIMIT = 9, KEY_Y0 = 10, KEY_Y1 = 11, KEY_X0 = 12, KEY_X1 = 13;
+    private static final int DOUBLE_STRIDE = 14;
+
+    /*
+     * The ints of each edge: its curveTag, its edgeTag, its equivalence,
+     * the edge it was last compared to (or -1), the result of that
+     * comparison, whether that result came from the keys of a row and its
+     * flags.
+     */
+    private static final int CURVE_TAG = 0, EDGE_TAG = 1, EQUIVALENCE = 2, LAST_EDGE = 3,
+            LAST_RESULT = 4, LAST_IS_KEY = 5, FLAGS = 6;
+    private static final int INT_STRIDE = 7;
+
+    private static final int FLAG_INCREASING_T = 1;
+    private static final int FLAG_SPLIT_AT_CROSSINGS = 2;
+
+    private double[] d = new double[0];
+    private int[] n = new int[0];
+    private QCurve[] curves = new QCurve[0];
+    private int[] order = new int[0];
+    private final double[] yrange = new double[2];
+
+    /**
+     * Sweep the edges from top to bottom, classifying the active edges in
+     * each row. The edges must be sorted, and every edge's curve must be a
+     * line. The arguments are the same as the arguments of
+     * {@link QAreaOp#sweepRows(ExposedArrayWrapper, double, double, QParallelSweep.Rows, QSweepContext)}.
+     */
+    void sweep(QAreaOp op, ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+               QParallelSweep.Rows rows, QSweepContext context) {
+        int numedges = edges.elementCount;
+        load(edges);
+        int[] order = this.order;
+        double[] d = this.d;
+        int[] n = this.n;
+        double[] yrange = this.yrange;
+        ExposedArrayWrapper<QCurveLink> links = context == null ?
+                new ExposedArrayWrapper<>(QCurveLink.class) : context.links;
+        int e;
+        int left = 0;
+        int right = 0;
+        int cur;
+        int next;
+        yrange[0] = ytop;
+        // Active edges are between left (inclusive) and right (exclusive)
+        while (left < numedges) {
+            double y = yrange[0];
+            // Prune active edges that fall off the top of the active y range
+            for (cur = next = right - 1; cur >= left; cur--) {
+                e = order[cur];
+                if (d[e * DOUBLE_STRIDE + YBOT] > y) {
+                    if (next > cur) {
+                        order[next] = e;
+                    }
+                    next--;
+                }
+            }
+            left = next + 1;
+            // Grab a new "top of Y range" if the active edges are empty
+            if (left >= right) {
+                if (right >= numedges) {
+                    break;
+                }
+                y = d[order[right] * DOUBLE_STRIDE + YTOP];
+                if (y > yrange[0] && rows == null) {
+                    QAreaOp.finalizeSubCurves(context.subcurves, context.chains);
+                }
+                yrange[0] = y;
+            }
+            // Incorporate new active edges that enter the active y range
+            while (right < numedges && d[order[right] * DOUBLE_STRIDE + YTOP] <= y) {
+                right++;
+            }
+            // Sort the current active edges by their X values and
+            // determine the maximum valid Y range where the X ordering
+            // is correct
+            yrange[1] = d[order[left] * DOUBLE_STRIDE + YBOT];
+            if (yrange[1] > ybot) {
+                yrange[1] = ybot;
+            }
+            if (right < numedges) {
+                y = d[order[right] * DOUBLE_STRIDE + YTOP];
+                if (yrange[1] > y) {
+                    yrange[1] = y;
+                }
+            }
+            int nexteq = 1;
+            for (cur = left; cur < right; cur++) {
+                e = order[cur];
+                n[e * INT_STRIDE + EQUIVALENCE] = 0;
+                for (next = cur; next > left; next--) {
+                    int prevedge = order[next - 1];
+                    int ordering = compare(e, prevedge, yrange);
+                    if (yrange[1] <= yrange[0]) {
+                        throw new InternalError("backstepping to "+yrange[1]+
+                                " from "+yrange[0]);
+                    }
+                    if (ordering >= 0) {
+                        if (ordering == 0) {
+                            // If the curves are equal, mark them to be
+                            // deleted later if they cancel each other out
+                            int eq = n[prevedge * INT_STRIDE + EQUIVALENCE];
+                            if (eq == 0) {
+                                eq = nexteq++;
+                                n[prevedge * INT_STRIDE + EQUIVALENCE] = eq;
+                            }
+                            n[e * INT_STRIDE + EQUIVALENCE] = eq;
+                        }
+                        break;
+                    }
+                    order[next] = prevedge;
+                }
+                order[next] = e;
+            }
+            // Now prune the active edge list (see QAreaOp.sweepRows)
+            op.newRow();
+            double ystart = yrange[0];
+            double yend = yrange[1];
+            for (cur = left; cur < right; cur++) {
+                e = order[cur];
+                int etag;
+                int eq = n[e * INT_STRIDE + EQUIVALENCE];
+                if (eq != 0) {
+                    int origstate = op.getState();
+                    etag = (origstate == QAreaOp.RSTAG_INSIDE
+                            ? QAreaOp.ETAG_EXIT
+                            : QAreaOp.ETAG_ENTER);
+                    int activematch = -1;
+                    int longestmatch = e;
+                    double furthesty = yend;
+                    do {
+                        classify(op, e);
+                        if (activematch == -1 &&
+                                n[e * INT_STRIDE + EDGE_TAG] == etag &&
+                                d[e * DOUBLE_STRIDE + ACTIVEY] >= ystart)
+                        {
+                            activematch = e;
+                        }
+                        y = d[e * DOUBLE_STRIDE + YBOT];
+                        if (y > furthesty) {
+                            longestmatch = e;
+                            furthesty = y;
+                        }
+                    } while (++cur < right &&
+                            n[(e = order[cur]) * INT_STRIDE + EQUIVALENCE] == eq);
+                    --cur;
+                    if (op.getState() == origstate) {
+                        etag = QAreaOp.ETAG_IGNORE;
+                    } else {
+                        e = (activematch != -1 ? activematch : longestmatch);
+                    }
+                } else {
+                    etag = classify(op, e);
+                }
+                if (etag != QAreaOp.ETAG_IGNORE) {
+                    d[e * DOUBLE_STRIDE + ACTIVEY] = yend;
+                    n[e * INT_STRIDE + EDGE_TAG] = etag;
+                    links.add(context == null ?
+                            new QCurveLink(curves[e], ystart, yend, etag) :
+                            context.createLink(curves[e], ystart, yend, etag));
+                }
+            }
+            if (op.getState() != QAreaOp.RSTAG_OUTSIDE) {
+                System.out.println("Still inside at end of active edge list!");
+                System.out.println("num curves = "+(right-left));
+                System.out.println("num links = "+links.elementCount);
+                System.out.println("y top = "+yrange[0]);
+                for (cur = left; cur < right; cur++) {
+                    System.out.println(curves[order[cur]]);
+                }
+            }
+            if (rows == null) {
+                QAreaOp.resolveLinks(context.subcurves, context.chains, links, context);
+            } else {
+                rows.add(ystart, yend, links);
+            }
+            links.clear();
+            // Finally capture the bottom of the valid Y range as the top
+            // of the next Y range.
+            yrange[0] = yend;
+        }
+        Arrays.fill(curves, 0, numedges, null);
+    }
+
+    /**
+     * Copy the edges into this object's arrays, in the order they are listed.
+     */
+    private void load(ExposedArrayWrapper<QEdge> edges) {
+        int size = edges.elementCount;
+        if (curves.length < size) {
+            int capacity = Math.max(size, curves.length * 2);
+            d = new double[capacity * DOUBLE_STRIDE];
+            n = new int[capacity * INT_STRIDE];
+            curves = new QCurve[capacity];
+            order = new int[capacity];
+        }
+        for (int a = 0; a < size; a++) {
+            QEdge edge = edges.elementData[a];
+            QCurve c = edge.curve;
+            if (c.order != 1) {
+                throw new IllegalArgumentException("edge " + a + " is not a line: " + c);
+            }
+            int i = a * DOUBLE_STRIDE;
+            d[i + X0] = c.x0;
+            d[i + Y0] = c.y0;
+            d[i + X1] = c.x1;
+            d[i + Y1] = c.y1;
+            d[i + XMIN] = c.xmin;
+            d[i + XMAX] = c.xmax;
+            d[i + YTOP] = edge.ytop;
+            d[i + YBOT] = edge.ybot;
+            d[i + ACTIVEY] = 0;
+            d[i + KEY_Y0] = Double.NaN;
+            d[i + KEY_Y1] = Double.NaN;
+            int j = a * INT_STRIDE;
+            n[j + CURVE_TAG] = edge.curveTag;
+            n[j + EDGE_TAG] = QAreaOp.ETAG_IGNORE;
+            n[j + EQUIVALENCE] = 0;
+            n[j + LAST_EDGE] = -1;
+            n[j + FLAGS] = (c.isIncreasingT ? FLAG_INCREASING_T : 0) |
+                    (edge.splitAtCrossings ? FLAG_SPLIT_AT_CROSSINGS : 0);
+            curves[a] = c;
+            order[a] = a;
+        }
+    }
+
+    /**
+     * Release arrays that are larger than a QSweepContext retains.
+     */
+    void trim() {
+        if (curves.length > QSweepContext.MAX_RETAINED_SIZE) {
+            d = new double[0];
+            n = new int[0];
+            curves = new QCurve[0];
+            order = new int[0];
+        }
+    }
+
+    private int classify(QAreaOp op, int e) {
+        return op.classify(n[e * INT_STRIDE + CURVE_TAG],
+                (n[e * INT_STRIDE + FLAGS] & FLAG_INCREASING_T) != 0);
+    }
+
+    private double XforY(int e, double y) {
+        int i = e * DOUBLE_STRIDE;
+        return QOrder1.XforY(d[i + X0], d[i + Y0], d[i + X1], d[i + Y1], y);
+    }
+
+    /**
+     * Compare two edges the way {@link QEdge#compareTo(QEdge, double[])}
+     * compares two edges whose curves are lines.
+     */
+    private int compare(int a, int b, double[] yrange) {
+        int ia = a * DOUBLE_STRIDE;
+        int ib = b * DOUBLE_STRIDE;
+        int ja = a * INT_STRIDE;
+        int jb = b * INT_STRIDE;
+        // an edge may end above the bottom of its line
+        if (yrange[1] > d[ia + YBOT]) {
+            yrange[1] = d[ia + YBOT];
+        }
+        if (yrange[1] > d[ib + YBOT]) {
+            yrange[1] = d[ib + YBOT];
+        }
+        if (n[ja + LAST_EDGE] == b && yrange[0] < d[ia + LAST_LIMIT] &&
+                (n[ja + LAST_IS_KEY] == 0 || d[ia + LAST_LIMIT] >= yrange[1])) {
+            if (yrange[1] > d[ia + LAST_LIMIT]) {
+                yrange[1] = d[ia + LAST_LIMIT];
+            }
+            return n[ja + LAST_RESULT];
+        }
+        if (n[jb + LAST_EDGE] == a && yrange[0] < d[ib + LAST_LIMIT] &&
+                (n[jb + LAST_IS_KEY] == 0 || d[ib + LAST_LIMIT] >= yrange[1])) {
+            if (yrange[1] > d[ib + LAST_LIMIT]) {
+                yrange[1] = d[ib + LAST_LIMIT];
+            }
+            return 0-n[jb + LAST_RESULT];
+        }
+        if ((n[ja + FLAGS] & n[jb + FLAGS] & FLAG_SPLIT_AT_CROSSINGS) != 0) {
+            // neither edge should cross the other in this row
+            double y = (yrange[0] + yrange[1]) / 2;
+            double x1 = XforY(a, y);
+            double x2 = XforY(b, y);
+            if (!fairlyClose(x1, x2)) {
+                int ret = x1 < x2 ? -1 : 1;
+                if (isOrderedAt(a, b, yrange[0], ret) && isOrderedAt(a, b, yrange[1], ret)) {
+                    setLast(a, b, yrange[1], ret, false);
+                    return ret;
+                }
+            }
+        }
+        int ret;
+        double limit;
+        boolean isKey = false;
+        double ytop = yrange[0];
+        if (d[ia + XMAX] < d[ib + XMIN] || d[ia + XMIN] > d[ib + XMAX]) {
+            // these lines never meet
+            ret = d[ia + XMAX] < d[ib + XMIN] ? -1 : 1;
+            limit = Math.min(d[ia + YBOT], d[ib + YBOT]);
+        } else if ((ret = compareKeys(a, b, yrange)) != 0) {
+            // Unlike QEdge, this order is kept until the lines cross. Until
+            // then every row either finds the lines apart again, or compares
+            // them exactly and finds the same order (because they can only
+            // be equal where they cross). But only an exact comparison
+            // limits a row to the crossing, so a row that contains the
+            // crossing compares the lines again.
+            isKey = true;
+            crossing = QOrder1.getCrossing(d[ia + X0], d[ia + Y0], d[ia + X1], d[ia + Y1],
+                    d[ib + X0], d[ib + Y0], d[ib + X1], d[ib + Y1]);
+            limit = crossing > ytop ? crossing : Math.min(d[ia + YBOT], d[ib + YBOT]);
+        } else {
+            ret = compareLines(ia, ib, yrange);
+            if (ret != 0) {
+                // this order holds until the lines cross, not just for this row
+                limit = crossing > ytop ? crossing : Math.min(d[ia + YBOT], d[ib + YBOT]);
+            } else {
+                limit = yrange[1];
+            }
+        }
+        setLast(a, b, Math.max(yrange[1], limit), ret, isKey);
+        return ret;
+    }
+
+    /**
+     * The y value where the lines of the last call to
+     * {@link #compareLines(int, int, double[])} cross, or NaN.
+     */
+    private double crossing;
+
+    /**
+     * This is the same as {@link QOrder1#compareLines(double, double, double, double, double, double, double, double, double[])},
+     * except it also stores the y value where the lines cross in {@link #crossing},
+     * so it is only calculated once.
+     *
+     * @param ia the index of the first line's doubles.
+     * @param ib the index of the second line's doubles.
+     */
+    private int compareLines(int ia, int ib, double[] yrange) {
+        double ax0 = d[ia + X0], ay0 = d[ia + Y0], ax1 = d[ia + X1], ay1 = d[ia + Y1];
+        double bx0 = d[ib + X0], by0 = d[ib + Y0], bx1 = d[ib + X1], by1 = d[ib + Y1];
+        if (yrange[1] <= yrange[0]) {
+            throw new InternalError("yrange already screwed up...");
+        }
+        yrange[1] = Math.min(Math.min(yrange[1], ay1), by1);
+        if (yrange[1] <= yrange[0]) {
+            throw new InternalError("backstepping from "+yrange[0]+" to "+yrange[1]);
+        }
+        double y = crossing = QOrder1.getCrossing(ax0, ay0, ax1, ay1, bx0, by0, bx1, by1);
+        if (d[ia + XMAX] <= d[ib + XMIN]) {
+            return (d[ia + XMIN] == d[ib + XMAX]) ? 0 : -1;
+        }
+        if (d[ia + XMIN] >= d[ib + XMAX]) {
+            return 1;
+        }
+        double ytop = Math.max(ay0, by0);
+        if (!Double.isNaN(y)) {
+            if (y <= yrange[0]) {
+                // intersection is above us
+                // Use bottom-most common y for comparison
+                y = Math.min(ay1, by1);
+                return QCurve.orderof(QOrder1.XforY(ax0, ay0, ax1, ay1, y), QOrder1.XforY(bx0, by0, bx1, by1, y));
+            }
+            // intersection is below the top of our range
+            if (y < yrange[1]) {
+                // If intersection is in our range, adjust valid range
+                yrange[1] = y;
+            }
+        }
+        // Use top-most common y for comparison
+        return QCurve.orderof(QOrder1.XforY(ax0, ay0, ax1, ay1, ytop), QOrder1.XforY(bx0, by0, bx1, by1, ytop));
+    }
+
+    private void setLast(int a, int b, double limit, int result, boolean isKey) {
+        n[a * INT_STRIDE + LAST_EDGE] = b;
+        n[a * INT_STRIDE + LAST_RESULT] = result;
+        n[a * INT_STRIDE + LAST_IS_KEY] = isKey ? 1 : 0;
+        d[a * DOUBLE_STRIDE + LAST_LIMIT] = limit;
+    }
+
+    /**
+     * Return true if two edges are in the given order at y, or if they are
+     * too close at y to tell.
+     */
+    private boolean isOrderedAt(int a, int b, double y, int order) {
+        double x1 = XforY(a, y);
+        double x2 = XforY(b, y);
+        return fairlyClose(x1, x2) || (x1 < x2 ? -1 : 1) == order;
+    }
+
+    /**
+     * Return -1 or 1 if edge a is entirely left or right of edge b in a
+     * row, or 0 if the x values they cover in the row overlap.
+     */
+    private int compareKeys(int a, int b, double[] yrange) {
+        updateKey(a, yrange);
+        updateKey(b, yrange);
+        int ia = a * DOUBLE_STRIDE;
+        int ib = b * DOUBLE_STRIDE;
+        double axmin = Math.min(d[ia + KEY_X0], d[ia + KEY_X1]);
+        double axmax = Math.max(d[ia + KEY_X0], d[ia + KEY_X1]);
+        double bxmin = Math.min(d[ib + KEY_X0], d[ib + KEY_X1]);
+        double bxmax = Math.max(d[ib + KEY_X0], d[ib + KEY_X1]);
+        // edges that are (almost) touching are left to the exact comparison
+        if (axmax < bxmin && !fairlyClose(axmax, bxmin)) {
+            return -1;
+        }
+        if (axmin > bxmax && !fairlyClose(axmin, bxmax)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Calculate the x values at the top and bottom of a row, unless they are
+     * already known. Each row begins where the previous row ended, so the x
+     * value at the top of a row is usually known from the previous row.
+     */
+    private void updateKey(int e, double[] yrange) {
+        int i = e * DOUBLE_STRIDE;
+        double y0 = yrange[0];
+        double y1 = yrange[1];
+        if (d[i + KEY_Y0] == y0 && d[i + KEY_Y1] >= y1) {
+            return;
+        }
+        d[i + KEY_X0] = d[i + KEY_Y1] == y0 ? d[i + KEY_X1] : XforY(e, y0);
+        d[i + KEY_X1] = XforY(e, y1);
+        d[i + KEY_Y0] = y0;
+        d[i + KEY_Y1] = y1;
+    }
+
+    /**
+     * This is the same as {@link QCurve#fairlyClose(double, double)}.
+     */
+    private static boolean fairlyClose(double v1, double v2) {
+        return (Math.abs(v1 - v2) <
+                Math.max(Math.abs(v1), Math.abs(v2)) * 1E-10);
+    }
+}
@@ -0,0 +1,145 @@
+package com.pump.awt.geom;
+
+/**
+ * This finds edges of the left and right operands that describe exactly
+ * the same curve, and merges each pair into one edge before the sweep.
+ * <p>
+ * Adjacent shapes (like neighboring tiles or parcels) share their
+ * boundaries, so the same curve appears once in each operand (usually in
+ * opposite directions). The sweep can only identify these pairs by
+ * comparing them in every row they span: the comparison searches for a
+ * crossing until the curves are close enough to treat as equal, and then
+ * each pair is classified as an equivalence set. A merged edge is tagged
+ * {@link QAreaOp#CTAG_BOTH}, so it toggles both operands as it is
+ * classified, and it is never compared to its twin.
+ * </p>
+ * <p>
+ * Curves are matched by hashing their endpoints and control points, so
+ * only curves with identical coordinates are merged. Curves that overlap
+ * but are divided differently are still resolved by the sweep.
+ * </p>
+ */
+final class QSharedEdges {
+
+    private QSharedEdges() {
+    }
+
+    /**
+     * Merge every right edge that has the same geometry and y range as a
+     * left edge into that left edge. Each merged right edge is retagged
+     * {@link QAreaOp#CTAG_BOTH} and its left edge is removed. The order of
+     * the remaining edges is unchanged.
+     *
+     * @return the number of pairs that were merged.
+     */
+    static int merge(ExposedArrayWrapper<QEdge> edges) {
+        QEdge[] data = edges.elementData;
+        int size = edges.elementCount;
+        int leftCount = 0;
+        for (int a = 0; a < size; a++) {
+            if (data[a].curveTag == QAreaOp.CTAG_LEFT) {
+                leftCount++;
+            }
+        }
+        if (leftCount == 0 || leftCount == size) {
+            return 0;
+        }
+
+        // an open-addressing table of (index + 1) of each left edge
+        int capacity = Integer.highestOneBit(leftCount) << 2;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        for (int a = 0; a < size; a++) {
+            QEdge e = data[a];
+            if (e.curveTag == QAreaOp.CTAG_LEFT) {
+                int i = hash(e) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = a + 1;
+            }
+        }
+
+        int mergeCount = 0;
+        for (int a = 0; a < size; a++) {
+            QEdge e = data[a];
+            if (e.curveTag != QAreaOp.CTAG_RIGHT) {
+                continue;
+            }
+            int i = hash(e) & mask;
+            int j;
+            while ((j = table[i]) != 0) {
+                // a negative value is a left edge that is already merged
+                if (j > 0 && isSameEdge(data[j - 1], e)) {
+                    table[i] = -j;
+                    data[j - 1] = null;
+                    e.curveTag = QAreaOp.CTAG_BOTH;
+                    mergeCount++;
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+        if (mergeCount == 0) {
+            return 0;
+        }
+
+        int k = 0;
+        for (int a = 0; a < size; a++) {
+            if (data[a] != null) {
+                data[k++] = data[a];
+            }
+        }
+        edges.elementCount = k;
+        return mergeCount;
+    }
+
+    private static int hash(QEdge e) {
+        QCurve c = e.curve;
+        long h = c.order;
+        h = h * 31 + Double.doubleToLongBits(e.ytop);
+        h = h * 31 + Double.doubleToLongBits(e.ybot);
+        h = h * 31 + Double.doubleToLongBits(c.x0);
+        h = h * 31 + Double.doubleToLongBits(c.y0);
+        h = h * 31 + Double.doubleToLongBits(c.x1);
+        h = h * 31 + Double.doubleToLongBits(c.y1);
+        if (c.order == 2) {
+            QOrder2 q = (QOrder2) c;
+            h = h * 31 + Double.doubleToLongBits(q.cx0);
+            h = h * 31 + Double.doubleToLongBits(q.cy0);
+        } else if (c.order == 3) {
+            QOrder3 q = (QOrder3) c;
+            h = h * 31 + Double.doubleToLongBits(q.cx0);
+            h = h * 31 + Double.doubleToLongBits(q.cy0);
+            h = h * 31 + Double.doubleToLongBits(q.cx1);
+            h = h * 31 + Double.doubleToLongBits(q.cy1);
+        }
+        h ^= (h >>> 32);
+        int i = (int) h;
+        return i ^ (i >>> 16);
+    }
+
+    /**
+     * Return true if two edges span the same y values of curves that have
+     * the same coordinates (in either direction).
+     */
+    private static boolean isSameEdge(QEdge e1, QEdge e2) {
+        QCurve c1 = e1.curve;
+        QCurve c2 = e2.curve;
+        if (e1.ytop != e2.ytop || e1.ybot != e2.ybot || c1.order != c2.order ||
+                c1.x0 != c2.x0 || c1.y0 != c2.y0 || c1.x1 != c2.x1 || c1.y1 != c2.y1) {
+            return false;
+        }
+        if (c1.order == 2) {
+            QOrder2 q1 = (QOrder2) c1;
+            QOrder2 q2 = (QOrder2) c2;
+            return q1.cx0 == q2.cx0 && q1.cy0 == q2.cy0;
+        } else if (c1.order == 3) {
+            QOrder3 q1 = (QOrder3) c1;
+            QOrder3 q2 = (QOrder3) c2;
+            return q1.cx0 == q2.cx0 && q1.cy0 == q2.cy0 &&
+                    q1.cx1 == q2.cx1 && q1.cy1 == q2.cy1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+package com.pump.awt.geom;
+
+/**
+ * This removes the subpaths of each operand that lie entirely outside of
+ * the other operand's bounds before a CAGOp sweeps them.
+ * <p>
+ * A subpath whose bounds are disjoint from the other operand's bounds can't
+ * enclose any point of the other operand, so removing it doesn't change
+ * which side of any other edge the other operand is on. Where that subpath
+ * is, the other operand is absent, so the result there only depends on the
+ * subpath's own operand: the subpath is either copied to the result as-is
+ * or discarded (for example: the parts of an intersection outside of the
+ * other operand's bounds are always discarded).
+ * </p>
+ * <p>
+ * Individual curves can't be removed this way: every curve toggles whether
+ * its operand is inside for every edge to the right of it, so the sweep
+ * needs the rest of its subpath too. This complements {@link QSweepBand},
+ * which limits the sweep to the y values both operands share.
+ * </p>
+ * <p>
+ * A CAGOp only culls subpaths if {@link QAreaOp.CAGOp#setCullSubpaths(boolean)}
+ * enabled it.
+ * </p>
+ */
+final class QSubpathCulling {
+
+    /**
+     * Return the operands without their subpaths that are outside of the
+     * other operand's bounds, or null if no subpaths can be removed.
+     *
+     * @param keepLeft whether the result contains points that are only in the left operand.
+     * @param keepRight whether the result contains points that are only in the right operand.
+     * @param isRightNormalized false if the right operand is the curves of a path that has
+     *                          not been normalized. Then its subpaths are only removed if they
+     *                          are discarded, because they can't be copied to the result.
+     */
+    static QSubpathCulling create(ExposedArrayWrapper<QCurve> left, ExposedArrayWrapper<QCurve> right,
+                                  boolean keepLeft, boolean keepRight, boolean isRightNormalized) {
+        if (left.elementCount == 0 || right.elementCount == 0) {
+            return null;
+        }
+        double[] leftBounds = getBounds(left);
+        double[] rightBounds = getBounds(right);
+        ExposedArrayWrapper<QCurve> passThrough = new ExposedArrayWrapper<>(QCurve.class);
+        ExposedArrayWrapper<QCurve> newLeft = cull(left, rightBounds, keepLeft ? passThrough : null);
+        ExposedArrayWrapper<QCurve> newRight = keepRight && !isRightNormalized ? null :
+                cull(right, leftBounds, keepRight ? passThrough : null);
+        if (newLeft == null && newRight == null) {
+            return null;
+        }
+        return new QSubpathCulling(newLeft == null ? left : newLeft,
+                newRight == null ? right : newRight, passThrough);
+    }
+
+    /**
+     * Return the minimum x, minimum y, maximum x and maximum y of the
+     * control points of a list of curves.
+     */
+    private static double[] getBounds(ExposedArrayWrapper<QCurve> curves) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            bounds[0] = Math.min(bounds[0], c.xmin);
+            bounds[1] = Math.min(bounds[1], c.y0);
+            bounds[2] = Math.max(bounds[2], c.xmax);
+            bounds[3] = Math.max(bounds[3], c.y1);
+        }
+        return bounds;
+    }
+
+    /**
+     * Return the subpaths of a list of curves that overlap (or touch) the
+     * given bounds, or null if every subpath does. The other subpaths are
+     * added to passThrough if it is non-null.
+     */
+    private static ExposedArrayWrapper<QCurve> cull(ExposedArrayWrapper<QCurve> curves, double[] bounds,
+                                                    ExposedArrayWrapper<QCurve> passThrough) {
+        ExposedArrayWrapper<QCurve> kept = null;
+        int start = 0;
+        while (start < curves.elementCount) {
+            QCurve moveto = curves.elementData[start];
+            double xmin = moveto.x0;
+            double xmax = xmin;
+            double ymin = moveto.y0;
+            double ymax = ymin;
+            int end = start + 1;
+            while (end < curves.elementCount && curves.elementData[end].order != 0) {
+                QCurve c = curves.elementData[end];
+                xmin = Math.min(xmin, c.xmin);
+                xmax = Math.max(xmax, c.xmax);
+                ymin = Math.min(ymin, c.y0);
+                ymax = Math.max(ymax, c.y1);
+                end++;
+            }
+            boolean isOutside = xmax < bounds[0] || ymax < bounds[1] ||
+                    xmin > bounds[2] || ymin > bounds[3];
+            if (isOutside) {
+                if (kept == null) {
+                    kept = new ExposedArrayWrapper<>(QCurve.class, curves.elementCount);
+                    for (int a = 0; a < start; a++) {
+                        kept.add(curves.elementData[a]);
+                    }
+                }
+                if (passThrough != null) {
+                    for (int a = start; a < end; a++) {
+                        passThrough.add(curves.elementData[a]);
+                    }
+                }
+            } else if (kept != null) {
+                for (int a = start; a < end; a++) {
+                    kept.add(curves.elementData[a]);
+                }
+            }
+            start = end;
+        }
+        return kept;
+    }
+
+    /**
+     * The left operand without the subpaths that were removed.
+     */
+    final ExposedArrayWrapper<QCurve> left;
+
+    /**
+     * The right operand without the subpaths that were removed.
+     */
+    final ExposedArrayWrapper<QCurve> right;
+
+    /**
+     * The removed subpaths that belong in the result.
+     */
+    private final ExposedArrayWrapper<QCurve> passThrough;
+
+    private QSubpathCulling(ExposedArrayWrapper<QCurve> left, ExposedArrayWrapper<QCurve> right,
+                            ExposedArrayWrapper<QCurve> passThrough) {
+        this.left = left;
+        this.right = right;
+        this.passThrough = passThrough;
+    }
+
+    /**
+     * Add the removed subpaths that belong in the result.
+     */
+    void addPassThrough(ExposedArrayWrapper<QCurve> curves) {
+        for (int a = 0; a < passThrough.elementCount; a++) {
+            curves.add(passThrough.elementData[a]);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.pump.awt.geom;
+
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * This decides whether an operation is cheaper to sweep along the x axis
+ * instead of the y axis, and it transposes curves between the two.
+ * <p>
+ * The sweep starts a new row at every distinct y value of a vertex, and
+ * every row sorts all of the edges that are active in it. So the cost of a
+ * sweep is roughly the number of rows each edge is active in, summed over
+ * every edge. For wide, short geometry (like a line of text) most rows
+ * include nearly every edge, but if the same geometry is swept from left
+ * to right then each row only includes the edges near it.
+ * </p>
+ * <p>
+ * Transposing swaps the x and y values of every point. That is exact for
+ * lines, but a quadratic or cubic curve is divided where it turns along the
+ * new y axis, and transposing the result back divides those fragments again,
+ * so the curves wouldn't be the original curves (or the curves the y axis
+ * sweep produces). So only operands that consist entirely of lines are
+ * transposed. Transposing also reverses the orientation of every subpath,
+ * so the subpaths are reversed afterwards to keep them oriented the way the
+ * sweep orients them.
+ * </p>
+ */
+final class QSweepAxis {
+
+    /**
+     * Operations with fewer edges than this are always swept along the
+     * y axis, because transposing their curves costs more than it saves.
+     */
+    static final int MIN_EDGE_COUNT = 256;
+
+    /**
+     * The maximum number of edges used to estimate the cost of a sweep.
+     * Larger operands are sampled at regular intervals.
+     */
+    private static final int MAX_SAMPLE_SIZE = 2048;
+
+    /**
+     * The estimated cost of sweeping along the y axis must be this many
+     * times the cost of sweeping along the x axis before an operation is
+     * transposed.
+     */
+    private static final int MIN_COST_RATIO = 2;
+
+    private static final AffineTransform TRANSPOSE = new AffineTransform(0, 1, 1, 0, 0, 0);
+
+    private QSweepAxis() {
+    }
+
+    /**
+     * Return true if these operands only contain lines, and combining them
+     * would be significantly cheaper if they were transposed.
+     *
+     * @param isBanded true if the operation only sweeps the range where
+     *                 both operands have curves (see {@link QSweepBand}).
+     */
+    static boolean isTransposeCheaper(ExposedArrayWrapper<QCurve> left, ExposedArrayWrapper<QCurve> right,
+                                      boolean isBanded) {
+        int size = left.elementCount + right.elementCount;
+        if (size < MIN_EDGE_COUNT || !QAreaOp.isPolygonal(left) || !QAreaOp.isPolygonal(right)) {
+            return false;
+        }
+        double[] yband = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] xband = {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        if (isBanded && left.elementCount > 0 && right.elementCount > 0) {
+            double[] leftRange = getRange(left);
+            double[] rightRange = getRange(right);
+            yband[0] = Math.max(leftRange[0], rightRange[0]);
+            yband[1] = Math.min(leftRange[1], rightRange[1]);
+            xband[0] = Math.max(leftRange[2], rightRange[2]);
+            xband[1] = Math.min(leftRange[3], rightRange[3]);
+        }
+        int step = Math.max(1, size / MAX_SAMPLE_SIZE);
+        int capacity = size / step + 1;
+        double[] ylo = new double[capacity];
+        double[] yhi = new double[capacity];
+        double[] xlo = new double[capacity];
+        double[] xhi = new double[capacity];
+        int sampleSize = 0;
+        for (int a = 0; a < size; a += step) {
+            QCurve c = a < left.elementCount ? left.elementData[a] : right.elementData[a - left.elementCount];
+            if (c.order > 0) {
+                ylo[sampleSize] = c.y0;
+                yhi[sampleSize] = c.y1;
+                // the x-monotone pieces of this curve span its x range
+                xlo[sampleSize] = c.xmin;
+                xhi[sampleSize] = c.xmax;
+                sampleSize++;
+            }
+        }
+        if (sampleSize == 0) {
+            return false;
+        }
+        long costY = getRowCount(ylo, yhi, sampleSize, yband);
+        long costX = getRowCount(xlo, xhi, sampleSize, xband);
+        // transposing costs about as much as visiting every edge once more
+        return (costX + sampleSize) * MIN_COST_RATIO < costY;
+    }
+
+    /**
+     * Return the minimum y, maximum y, minimum x and maximum x of a list of curves.
+     */
+    private static double[] getRange(ExposedArrayWrapper<QCurve> curves) {
+        double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.order > 0) {
+                range[0] = Math.min(range[0], c.y0);
+                range[1] = Math.max(range[1], c.y1);
+                range[2] = Math.min(range[2], c.xmin);
+                range[3] = Math.max(range[3], c.xmax);
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Return the number of rows every edge is active in, summed over every
+     * edge, if a row starts at every distinct endpoint.
+     *
+     * @param band the range that is swept. Edges are clipped to this range,
+     *             and edges outside of it are ignored.
+     */
+    private static long getRowCount(double[] lo, double[] hi, int size, double[] band) {
+        double[] values = new double[size * 2];
+        int valueCount = 0;
+        for (int a = 0; a < size; a++) {
+            if (hi[a] >= band[0] && lo[a] <= band[1]) {
+                values[valueCount++] = Math.max(lo[a], band[0]);
+                values[valueCount++] = Math.min(hi[a], band[1]);
+            }
+        }
+        Arrays.sort(values, 0, valueCount);
+        int distinct = 0;
+        for (int a = 0; a < valueCount; a++) {
+            if (distinct == 0 || values[a] != values[distinct - 1]) {
+                values[distinct++] = values[a];
+            }
+        }
+        long count = 0;
+        for (int a = 0; a < size; a++) {
+            if (hi[a] >= band[0] && lo[a] <= band[1]) {
+                // an edge that spans no rows (such as a vertical line when
+                // sweeping along x) is still visited once
+                int i0 = Arrays.binarySearch(values, 0, distinct, Math.max(lo[a], band[0]));
+                int i1 = Arrays.binarySearch(values, 0, distinct, Math.min(hi[a], band[1]));
+                count += Math.max(1, i1 - i0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Swap the x and y values of every point of a list of subpaths, and
+     * return the y-monotone curves of the result. If the subpaths only
+     * contain lines then transposing the result a second time restores
+     * the original lines.
+     */
+    static ExposedArrayWrapper<QCurve> transpose(ExposedArrayWrapper<QCurve> curves) {
+        if (curves.elementCount == 0) {
+            return curves;
+        }
+        ExposedArrayWrapper<QCurve> transposed = QAreaImpl.readCurves(QAreaImpl.getPathIterator(curves, TRANSPOSE),
+                curves.elementCount);
+        return QAreaImpl.reverseSubpaths(transposed);
+    }
+}
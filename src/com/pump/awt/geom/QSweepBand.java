@@ -0,0 +1,419 @@
+package com.pump.awt.geom;
+
+import java.util.*;
+
+/**
+ * This limits the expensive part of a QAreaOp (sorting and comparing active
+ * edges) to the range of y values where both operands have curves.
+ * <p>
+ * When one operand extends above (or below) the other, the parts of that
+ * operand that are above (or below) this band can't be changed by the other
+ * operand. Subpaths that lie entirely outside of the band are copied to the
+ * result as-is. Subpaths that cross the edge of the band are split into
+ * runs: the runs above the band become the chains the sweep starts with, and
+ * the runs below the band are joined to the chains the sweep ends with.
+ * </p>
+ * <p>
+ * The top and bottom of the band are placed between the y values of
+ * existing vertices, so no operand has a vertex or a horizontal edge along
+ * the top or bottom of the band.
+ * </p>
+ */
+final class QSweepBand {
+
+    /**
+     * Create a QSweepBand, or return null if the operands don't benefit from one.
+     *
+     * @param keepLeft whether the result contains points that are only in the left operand.
+     * @param keepRight whether the result contains points that are only in the right operand.
+     * @param isRightNormalized false if the right operand is the curves of a path that has
+     *                          not been normalized. Then the band covers every y value of
+     *                          the right operand, and only the left operand is clipped.
+     * @param context the context that provides the band's edges, links and chain ends.
+     */
+    static QSweepBand create(ExposedArrayWrapper<QCurve> left, ExposedArrayWrapper<QCurve> right,
+                             boolean keepLeft, boolean keepRight, boolean isRightNormalized,
+                             QSweepContext context) {
+        if (left.elementCount == 0 || right.elementCount == 0) {
+            return null;
+        }
+        double[] leftRange = getYRange(left);
+        double[] rightRange = getYRange(right);
+        double top = Math.max(leftRange[0], rightRange[0]);
+        double bottom = Math.min(leftRange[1], rightRange[1]);
+        if (!(top < bottom)) {
+            return null;
+        }
+
+        ExposedArrayWrapper<QCurve> upper = null;
+        if (leftRange[0] < rightRange[0]) {
+            upper = left;
+        } else if (rightRange[0] < leftRange[0]) {
+            upper = right;
+        }
+        ExposedArrayWrapper<QCurve> lower = null;
+        if (leftRange[1] > rightRange[1]) {
+            lower = left;
+        } else if (rightRange[1] > leftRange[1]) {
+            lower = right;
+        }
+        if (!isRightNormalized) {
+            // The subpaths of the right operand can't be split into runs,
+            // so the band extends over all of the right operand and only
+            // the left operand is clipped.
+            if (upper == right) {
+                upper = null;
+            }
+            if (lower == right) {
+                lower = null;
+            }
+        }
+
+        double ytop = Double.NEGATIVE_INFINITY;
+        if (upper != null) {
+            double y = getLastYBefore(upper, top);
+            double mid = (y + top) / 2;
+            if (y < mid && mid < top) {
+                ytop = mid;
+            }
+        }
+        double ybot = Double.POSITIVE_INFINITY;
+        if (lower != null) {
+            double y = getFirstYAfter(lower, bottom);
+            double mid = (bottom + y) / 2;
+            if (bottom < mid && mid < y) {
+                ybot = mid;
+            }
+        }
+        if (ytop == Double.NEGATIVE_INFINITY && ybot == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        QSweepBand band = new QSweepBand(ytop, ybot, context);
+        if (!band.addCurves(left, QAreaOp.CTAG_LEFT,
+                upper == left ? ytop : Double.NEGATIVE_INFINITY,
+                lower == left ? ybot : Double.POSITIVE_INFINITY, keepLeft)) {
+            return null;
+        }
+        if (!band.addCurves(right, QAreaOp.CTAG_RIGHT,
+                upper == right ? ytop : Double.NEGATIVE_INFINITY,
+                lower == right ? ybot : Double.POSITIVE_INFINITY, keepRight)) {
+            return null;
+        }
+        if (!band.sortEnds()) {
+            return null;
+        }
+        return band;
+    }
+
+    private static double[] getYRange(ExposedArrayWrapper<QCurve> curves) {
+        double min = curves.elementData[0].y0;
+        double max = min;
+        for (int a = 1; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            min = Math.min(min, c.y0);
+            max = Math.max(max, c.y1);
+        }
+        return new double[] {min, max};
+    }
+
+    /**
+     * Return the largest vertex y value that is less than y.
+     */
+    private static double getLastYBefore(ExposedArrayWrapper<QCurve> curves, double y) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.y0 < y && c.y0 > max) {
+                max = c.y0;
+            }
+            if (c.y1 < y && c.y1 > max) {
+                max = c.y1;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Return the smallest vertex y value that is greater than y.
+     */
+    private static double getFirstYAfter(ExposedArrayWrapper<QCurve> curves, double y) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < curves.elementCount; a++) {
+            QCurve c = curves.elementData[a];
+            if (c.y0 > y && c.y0 < min) {
+                min = c.y0;
+            }
+            if (c.y1 > y && c.y1 < min) {
+                min = c.y1;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * The top of the band, or negative infinity.
+     */
+    final double ytop;
+
+    /**
+     * The bottom of the band, or positive infinity.
+     */
+    final double ybot;
+
+    /**
+     * The edges (or parts of edges) inside this band.
+     */
+    final ExposedArrayWrapper<QEdge> edges;
+
+    /**
+     * Subpaths that are entirely outside of this band.
+     */
+    private final ExposedArrayWrapper<QCurve> passThrough = new ExposedArrayWrapper<>(QCurve.class);
+
+    /**
+     * The chain ends of the runs above this band, sorted by their x value at ytop.
+     */
+    private final ExposedArrayWrapper<QChainEnd> topChains = new ExposedArrayWrapper<>(QChainEnd.class);
+
+    /**
+     * The runs below this band. Each run starts with an ENTER link
+     * that descends from ybot and ends with an EXIT link that rises to ybot.
+     */
+    private final ExposedArrayWrapper<QCurveLink[]> bottomRuns = new ExposedArrayWrapper<>(QCurveLink[].class);
+
+    /**
+     * The first and last link of every run below this band, sorted by their x value at ybot.
+     */
+    private final ExposedArrayWrapper<QCurveLink> bottomLinks = new ExposedArrayWrapper<>(QCurveLink.class);
+
+    private final ExposedArrayWrapper<QCurveLink> pieces = new ExposedArrayWrapper<>(QCurveLink.class);
+
+    private final QSweepContext context;
+
+    private QSweepBand(double ytop, double ybot, QSweepContext context) {
+        this.ytop = ytop;
+        this.ybot = ybot;
+        this.context = context;
+        edges = context.edges;
+    }
+
+    /**
+     * Add the curves of one operand.
+     *
+     * @param ylo the top of the band for this operand (or negative infinity).
+     * @param yhi the bottom of the band for this operand (or positive infinity).
+     * @param keep whether curves outside of the band belong in the result.
+     * @return false if the operand was not structured as expected.
+     */
+    private boolean addCurves(ExposedArrayWrapper<QCurve> curves, int curveTag,
+                              double ylo, double yhi, boolean keep) {
+        int start = 0;
+        while (start < curves.elementCount) {
+            double ymin = curves.elementData[start].y0;
+            double ymax = ymin;
+            int end = start + 1;
+            while (end < curves.elementCount && curves.elementData[end].order != 0) {
+                QCurve c = curves.elementData[end];
+                ymin = Math.min(ymin, c.y0);
+                ymax = Math.max(ymax, c.y1);
+                end++;
+            }
+            if (ymax < ylo || ymin > yhi) {
+                if (keep) {
+                    for (int a = start; a < end; a++) {
+                        passThrough.add(curves.elementData[a]);
+                    }
+                }
+            } else if (ymin > ylo && ymax < yhi) {
+                for (int a = start + 1; a < end; a++) {
+                    edges.add(context.createEdge(curves.elementData[a], curveTag));
+                }
+            } else if (!addCrossingSubpath(curves, start, end, curveTag, ylo, yhi, keep)) {
+                return false;
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    /**
+     * Add a subpath that crosses the top or bottom of the band.
+     */
+    private boolean addCrossingSubpath(ExposedArrayWrapper<QCurve> curves, int start, int end,
+                                       int curveTag, double ylo, double yhi, boolean keep) {
+        // pieces outside of the band, in the order they are traversed.
+        // A null element represents a piece inside the band.
+        pieces.clear();
+        for (int a = start + 1; a < end; a++) {
+            QCurve c = curves.elementData[a];
+            int etag = c.isIncreasingT ? QAreaOp.ETAG_ENTER : QAreaOp.ETAG_EXIT;
+            if (c.y1 < ylo || c.y0 > yhi) {
+                pieces.add(context.createLink(c, c.y0, c.y1, etag));
+            } else if (c.y0 > ylo && c.y1 < yhi) {
+                edges.add(context.createEdge(c, curveTag));
+                pieces.add(null);
+            } else {
+                edges.add(context.createEdge(c, curveTag, Math.max(c.y0, ylo), Math.min(c.y1, yhi)));
+                QCurveLink above = c.y0 < ylo ? context.createLink(c, c.y0, ylo, etag) : null;
+                QCurveLink below = c.y1 > yhi ? context.createLink(c, yhi, c.y1, etag) : null;
+                if (c.isIncreasingT) {
+                    if (above != null)
+                        pieces.add(above);
+                    pieces.add(null);
+                    if (below != null)
+                        pieces.add(below);
+                } else {
+                    if (below != null)
+                        pieces.add(below);
+                    pieces.add(null);
+                    if (above != null)
+                        pieces.add(above);
+                }
+            }
+        }
+        if (!keep) {
+            return true;
+        }
+
+        int size = pieces.elementCount;
+        int firstBandPiece = 0;
+        while (pieces.elementData[firstBandPiece] != null) {
+            firstBandPiece++;
+            if (firstBandPiece == size) {
+                return false;
+            }
+        }
+        int runStart = -1;
+        for (int a = 1; a <= size; a++) {
+            int i = (firstBandPiece + a) % size;
+            if (pieces.elementData[i] == null || a == size) {
+                if (runStart != -1) {
+                    int runLength = (i - runStart + size) % size;
+                    QCurveLink[] run = new QCurveLink[runLength];
+                    for (int b = 0; b < runLength; b++) {
+                        run[b] = pieces.elementData[(runStart + b) % size];
+                    }
+                    if (!addRun(run)) {
+                        return false;
+                    }
+                    runStart = -1;
+                }
+            } else if (runStart == -1) {
+                runStart = i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a run of links that starts and ends at the top or bottom of this band.
+     */
+    private boolean addRun(QCurveLink[] run) {
+        if (run.length < 2) {
+            return false;
+        }
+        QCurveLink first = run[0];
+        QCurveLink last = run[run.length - 1];
+        if (first.getYBot() <= ytop) {
+            // A run above the band rises from ytop and then descends to ytop.
+            if (first.etag != QAreaOp.ETAG_EXIT || last.etag != QAreaOp.ETAG_ENTER) {
+                return false;
+            }
+            for (int a = 0; a < run.length - 2; a++) {
+                run[a].next = run[a + 1];
+            }
+            QChainEnd exit = context.createChainEnd(first, run[run.length - 2], QAreaOp.ETAG_EXIT, null);
+            QChainEnd enter = context.createChainEnd(last, last, QAreaOp.ETAG_ENTER, exit);
+            topChains.add(exit);
+            topChains.add(enter);
+        } else {
+            // A run below the band descends from ybot and then rises to ybot.
+            if (first.etag != QAreaOp.ETAG_ENTER || last.etag != QAreaOp.ETAG_EXIT) {
+                return false;
+            }
+            bottomRuns.add(run);
+            bottomLinks.add(first);
+            bottomLinks.add(last);
+        }
+        return true;
+    }
+
+    /**
+     * Sort the ends of the runs from left to right, and confirm that they
+     * alternate between entering and exiting the area. (If they don't then
+     * the operand's subpaths aren't oriented the way the sweep would orient
+     * them.)
+     */
+    private boolean sortEnds() {
+        Arrays.sort(topChains.elementData, 0, topChains.elementCount,
+                Comparator.comparingDouble(QChainEnd::getX));
+        for (int a = 0; a < topChains.elementCount; a++) {
+            int expectedTag = (a & 1) == 0 ? QAreaOp.ETAG_ENTER : QAreaOp.ETAG_EXIT;
+            if (topChains.elementData[a].etag != expectedTag) {
+                return false;
+            }
+        }
+        Arrays.sort(bottomLinks.elementData, 0, bottomLinks.elementCount,
+                Comparator.comparingDouble(QCurveLink::getX));
+        for (int a = 0; a < bottomLinks.elementCount; a++) {
+            int expectedTag = (a & 1) == 0 ? QAreaOp.ETAG_ENTER : QAreaOp.ETAG_EXIT;
+            if (bottomLinks.elementData[a].etag != expectedTag) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the chains the sweep should start with at ytop.
+     */
+    void addTopChains(ExposedArrayWrapper<QChainEnd> chains) {
+        for (int a = 0; a < topChains.elementCount; a++) {
+            chains.add(topChains.elementData[a]);
+        }
+    }
+
+    /**
+     * Join the chains the sweep ended with at ybot to the runs below this band.
+     */
+    void resolveBottom() {
+        if (bottomRuns.elementCount == 0) {
+            return;
+        }
+        ExposedArrayWrapper<QCurveLink> subcurves = context.subcurves;
+        ExposedArrayWrapper<QChainEnd> chains = context.chains;
+        QAreaOp.resolveLinks(subcurves, chains, bottomLinks, context);
+
+        // Each chain now ends with the first or last link of a run (or a
+        // link it absorbed), so we can identify chains by that link's curve.
+        Map<QCurve, QChainEnd> endsByCurve = new IdentityHashMap<>(chains.elementCount);
+        for (int a = 0; a < chains.elementCount; a++) {
+            QChainEnd chain = chains.elementData[a];
+            QCurveLink end = chain.etag == QAreaOp.ETAG_ENTER ? chain.tail : chain.head;
+            endsByCurve.put(end.curve, chain);
+        }
+        for (int a = 0; a < bottomRuns.elementCount; a++) {
+            QCurveLink[] run = bottomRuns.elementData[a];
+            QChainEnd enter = endsByCurve.get(run[0].curve);
+            QChainEnd exit = endsByCurve.get(run[run.length - 1].curve);
+            for (int b = 1; b < run.length - 1; b++) {
+                enter.addLink(run[b]);
+            }
+            QCurveLink subcurve = enter.linkTo(exit);
+            if (subcurve != null) {
+                subcurves.add(subcurve);
+            }
+        }
+        chains.clear();
+    }
+
+    /**
+     * Add the subpaths that are entirely outside of this band.
+     */
+    void addPassThrough(ExposedArrayWrapper<QCurve> curves) {
+        for (int a = 0; a < passThrough.elementCount; a++) {
+            curves.add(passThrough.elementData[a]);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.pump.awt.geom;
+
+import java.util.Arrays;
+
+/**
+ * This recycles the transient objects a QAreaOp creates while it sweeps
+ * edges (QEdges, QCurveLinks, QChainEnds and the arrays that hold them), so
+ * repeated operations on the same thread only allocate their output curves.
+ * <p>
+ * A context is confined to one thread. Every object it hands out remains
+ * valid until {@link #release()} is called, and then all of them are reused
+ * by the next operation. Nothing a context creates may be referenced by the
+ * result of an operation.
+ * </p>
+ */
+final class QSweepContext {
+
+    private static final ThreadLocal<QSweepContext> THREAD_CONTEXT = ThreadLocal.withInitial(QSweepContext::new);
+
+    /**
+     * The maximum number of objects (or array elements) a context retains
+     * between operations, so one unusually large operation does not
+     * permanently hold on to all of its memory.
+     */
+    static final int MAX_RETAINED_SIZE = 1 << 16;
+
+    /**
+     * Return this thread's context, or a new context if this thread's
+     * context is already in use. (For example: a ForkJoinPool may run
+     * another operation on this thread while this thread waits for a
+     * parallel sweep.)
+     * <p>
+     * Every call to this method must be followed by a call to {@link #release()}.
+     * </p>
+     */
+    static QSweepContext acquire() {
+        QSweepContext context = THREAD_CONTEXT.get();
+        if (context.inUse) {
+            context = new QSweepContext();
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    private boolean inUse;
+
+    private QEdge[] edgePool = new QEdge[0];
+    private int edgeCount;
+
+    private QCurveLink[] linkPool = new QCurveLink[0];
+    private int linkCount;
+
+    private QChainEnd[] chainEndPool = new QChainEnd[0];
+    private int chainEndCount;
+
+    private QCurveLink[] linkBuffer = new QCurveLink[0];
+    private QChainEnd[] chainEndBuffer = new QChainEnd[0];
+
+    /**
+     * The edges of the current operation.
+     */
+    final ExposedArrayWrapper<QEdge> edges = new ExposedArrayWrapper<>(QEdge.class);
+
+    /**
+     * The completed subpaths of the current operation.
+     */
+    final ExposedArrayWrapper<QCurveLink> subcurves = new ExposedArrayWrapper<>(QCurveLink.class);
+
+    /**
+     * The open chains of the current operation.
+     */
+    final ExposedArrayWrapper<QChainEnd> chains = new ExposedArrayWrapper<>(QChainEnd.class);
+
+    /**
+     * The links of the current row.
+     */
+    final ExposedArrayWrapper<QCurveLink> links = new ExposedArrayWrapper<>(QCurveLink.class);
+
+    private QSweepContext() {
+    }
+
+    private QPolygonSweep polygonSweep;
+
+    /**
+     * Return this context's QPolygonSweep, which retains its arrays between operations.
+     */
+    QPolygonSweep getPolygonSweep() {
+        if (polygonSweep == null) {
+            polygonSweep = new QPolygonSweep();
+        }
+        return polygonSweep;
+    }
+
+    QEdge createEdge(QCurve c, int curveTag) {
+        return createEdge(c, curveTag, c.y0, c.y1);
+    }
+
+    QEdge createEdge(QCurve c, int curveTag, double ytop, double ybot) {
+        if (edgeCount < edgePool.length) {
+            QEdge e = edgePool[edgeCount];
+            if (e != null) {
+                e.reset(c, curveTag, ytop, ybot);
+                edgeCount++;
+                return e;
+            }
+        } else {
+            edgePool = Arrays.copyOf(edgePool, Math.max(16, edgeCount * 2));
+        }
+        QEdge e = new QEdge(c, curveTag, ytop, ybot);
+        edgePool[edgeCount++] = e;
+        return e;
+    }
+
+    QCurveLink createLink(QCurve curve, double ystart, double yend, int etag) {
+        if (linkCount < linkPool.length) {
+            QCurveLink link = linkPool[linkCount];
+            if (link != null) {
+                link.reset(curve, ystart, yend, etag);
+                linkCount++;
+                return link;
+            }
+        } else {
+            linkPool = Arrays.copyOf(linkPool, Math.max(16, linkCount * 2));
+        }
+        QCurveLink link = new QCurveLink(curve, ystart, yend, etag);
+        linkPool[linkCount++] = link;
+        return link;
+    }
+
+    QChainEnd createChainEnd(QCurveLink head, QCurveLink tail, int etag, QChainEnd partner) {
+        if (chainEndCount < chainEndPool.length) {
+            QChainEnd chainEnd = chainEndPool[chainEndCount];
+            if (chainEnd != null) {
+                chainEnd.reset(head, tail, etag, partner);
+                chainEndCount++;
+                return chainEnd;
+            }
+        } else {
+            chainEndPool = Arrays.copyOf(chainEndPool, Math.max(16, chainEndCount * 2));
+        }
+        QChainEnd chainEnd = new QChainEnd(head, tail, etag, partner);
+        chainEndPool[chainEndCount++] = chainEnd;
+        return chainEnd;
+    }
+
+    /**
+     * Return a copy of the links followed by (at least) two null elements.
+     * The array is reused by the next call to this method.
+     */
+    QCurveLink[] copyLinks(ExposedArrayWrapper<QCurveLink> links) {
+        int size = links.elementCount;
+        if (linkBuffer.length < size + 2) {
+            linkBuffer = new QCurveLink[Math.max(size + 2, linkBuffer.length * 2)];
+        }
+        System.arraycopy(links.elementData, 0, linkBuffer, 0, size);
+        linkBuffer[size] = null;
+        linkBuffer[size + 1] = null;
+        return linkBuffer;
+    }
+
+    /**
+     * Return a copy of the chain ends followed by (at least) two null elements.
+     * The array is reused by the next call to this method.
+     */
+    QChainEnd[] copyChainEnds(ExposedArrayWrapper<QChainEnd> chains) {
+        int size = chains.elementCount;
+        if (chainEndBuffer.length < size + 2) {
+            chainEndBuffer = new QChainEnd[Math.max(size + 2, chainEndBuffer.length * 2)];
+        }
+        System.arraycopy(chains.elementData, 0, chainEndBuffer, 0, size);
+        chainEndBuffer[size] = null;
+        chainEndBuffer[size + 1] = null;
+        return chainEndBuffer;
+    }
+
+    /**
+     * Reclaim every object this context handed out so the next operation
+     * can reuse it, and let another caller acquire this context.
+     */
+    void release() {
+        recycle();
+        inUse = false;
+    }
+
+    /**
+     * Reclaim every object this context handed out. The caller may
+     * continue to use this context afterwards.
+     */
+    void recycle() {
+        // clear references so this context doesn't keep old curves in memory
+        for (int a = 0; a < edgeCount; a++) {
+            edgePool[a].clear();
+        }
+        for (int a = 0; a < linkCount; a++) {
+            linkPool[a].clear();
+        }
+        for (int a = 0; a < chainEndCount; a++) {
+            chainEndPool[a].clear();
+        }
+        edgeCount = 0;
+        linkCount = 0;
+        chainEndCount = 0;
+        Arrays.fill(linkBuffer, null);
+        Arrays.fill(chainEndBuffer, null);
+        edges.clear();
+        subcurves.clear();
+        chains.clear();
+        links.clear();
+
+        if (edgePool.length > MAX_RETAINED_SIZE) {
+            edgePool = Arrays.copyOf(edgePool, MAX_RETAINED_SIZE);
+        }
+        if (linkPool.length > MAX_RETAINED_SIZE) {
+            linkPool = Arrays.copyOf(linkPool, MAX_RETAINED_SIZE);
+        }
+        if (chainEndPool.length > MAX_RETAINED_SIZE) {
+            chainEndPool = Arrays.copyOf(chainEndPool, MAX_RETAINED_SIZE);
+        }
+        if (linkBuffer.length > MAX_RETAINED_SIZE) {
+            linkBuffer = new QCurveLink[0];
+        }
+        if (chainEndBuffer.length > MAX_RETAINED_SIZE) {
+            chainEndBuffer = new QChainEnd[0];
+        }
+        if (polygonSweep != null) {
+            polygonSweep.trim();
+        }
+        trim(edges);
+        trim(subcurves);
+        trim(chains);
+        trim(links);
+    }
+
+    private static <T> void trim(ExposedArrayWrapper<T> list) {
+        if (list.elementData.length > MAX_RETAINED_SIZE) {
+            list.elementData = Arrays.copyOf(list.elementData, ExposedArrayWrapper.DEFAULT_INITIAL_CAPACITY);
+        }
+    }
+}
@@ -0,0 +1,1350 @@
+package com.pump.awt.geom;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * This confirms QAreaImpl operations produce the same shapes as java.awt.geom.Area.
+ * <p>
+ * Shapes are compared by their signed area, so a missing or extra piece of a
+ * result (however small) fails these tests even if the results happen to
+ * render the same.
+ * </p>
+ */
+public class QAreaImplTests extends TestCase {
+
+    /**
+     * The flatness used to measure areas. Results that divide the same curves
+     * differently have (slightly) different flattened areas, so this is small
+     * enough that the difference is below the tolerance of these tests.
+     */
+    private static final double FLATNESS = .00001;
+
+    /**
+     * The tolerance for comparing the bounds of two shapes.
+     */
+    private static final double BOUNDS_TOLERANCE = .00001;
+
+    /**
+     * This is a regression test for a sweep that trusted its crossing search
+     * for curves: when the search missed a crossing, two edges kept the
+     * wrong order in the rows below it and part of the result was lost.
+     */
+    @Test
+    public void testAddRandomShapes() {
+        for (int seed = 0; seed < 4; seed++) {
+            Random random = new Random(seed);
+            Path2D p1 = createRandomShapes(random, 1500, 30, false);
+            Path2D p2 = createRandomShapes(random, 1500, 30, false);
+
+            Area expected = new Area(p1);
+            expected.add(new Area(p2));
+            QAreaImpl actual = new QAreaImpl(p1);
+            actual.add(new QAreaImpl(p2));
+            assertSameArea("seed " + seed, expected, actual);
+        }
+    }
+
+    @Test
+    public void testAddRandomPolygons() {
+        for (int seed = 0; seed < 4; seed++) {
+            Random random = new Random(seed);
+            Path2D p1 = createRandomShapes(random, 1500, 30, true);
+            Path2D p2 = createRandomShapes(random, 1500, 30, true);
+
+            Area expected = new Area(p1);
+            expected.add(new Area(p2));
+            QAreaImpl actual = new QAreaImpl(p1);
+            actual.add(new QAreaImpl(p2));
+            assertSameArea("seed " + seed, expected, actual);
+        }
+    }
+
+    @Test
+    public void testCombine() {
+        Random random = new Random(0);
+        List<Shape> shapes = new ArrayList<>();
+        List<QAreaImpl> areas = new ArrayList<>();
+        for (int a = 0; a < 6; a++) {
+            Shape shape = createRandomShapes(random, 40, 400, false);
+            shapes.add(shape);
+            areas.add(new QAreaImpl(shape));
+        }
+
+        Area any = new Area();
+        Area all = new Area(shapes.get(0));
+        Area firstOnly = new Area(shapes.get(0));
+        Area odd = new Area();
+        Area atLeast2 = new Area();
+        for (int a = 0; a < shapes.size(); a++) {
+            Area area = new Area(shapes.get(a));
+            any.add(area);
+            all.intersect(area);
+            if (a > 0) {
+                firstOnly.subtract(area);
+            }
+            odd.exclusiveOr(area);
+            for (int b = a + 1; b < shapes.size(); b++) {
+                Area pair = new Area(shapes.get(a));
+                pair.intersect(new Area(shapes.get(b)));
+                atLeast2.add(pair);
+            }
+        }
+
+        assertSameArea("ANY", any, QAreaImpl.combine(areas, QAreaOp.Classifier.ANY));
+        assertSameArea("ALL", all, QAreaImpl.combine(areas, QAreaOp.Classifier.ALL));
+        assertSameArea("FIRST_ONLY", firstOnly, QAreaImpl.combine(areas, QAreaOp.Classifier.FIRST_ONLY));
+        assertSameArea("ODD", odd, QAreaImpl.combine(areas, QAreaOp.Classifier.ODD));
+        assertSameArea("atLeast(2)", atLeast2, QAreaImpl.combine(areas, QAreaOp.Classifier.atLeast(2)));
+        assertSameArea("atLeast(1)", any, QAreaImpl.combine(areas, QAreaOp.Classifier.atLeast(1)));
+        assertTrue(QAreaImpl.combine(new ArrayList<>(), QAreaOp.Classifier.ANY).isEmpty());
+
+        // combining the areas doesn't modify them
+        for (int a = 0; a < shapes.size(); a++) {
+            assertSameArea("operand " + a, new Area(shapes.get(a)), areas.get(a));
+        }
+    }
+
+    /**
+     * This combines the operands of {@link #testAddRandomShapes()} that
+     * exposed a missed crossing in one sweep of two operands.
+     */
+    @Test
+    public void testCombineRandomShapes() {
+        Random random = new Random(3);
+        Path2D p1 = createRandomShapes(random, 1500, 30, false);
+        Path2D p2 = createRandomShapes(random, 1500, 30, false);
+
+        Area expected = new Area(p1);
+        expected.add(new Area(p2));
+        QAreaImpl actual = QAreaImpl.combine(Arrays.asList(new QAreaImpl(p1), new QAreaImpl(p2)),
+                QAreaOp.Classifier.ANY);
+        assertSameArea("ANY", expected, actual);
+    }
+
+    /**
+     * Small shapes inside an ellipse enter the sweep between its two edges.
+     * The sweep has to compare each new edge with every active edge it
+     * passes (like Area does), or its rows end at different y values and
+     * the estimated crossings of curves move.
+     */
+    @Test
+    public void testEdgesEnteringActiveRange() {
+        Random random = new Random(0);
+        Path2D shapes = createRandomShapes(random, 50, 100, false);
+        shapes.transform(new AffineTransform(.15, 0, 0, .1, 0, 0));
+        Shape ellipse = new Ellipse2D.Double(10, 20, 300, 150);
+        for (int op = 0; op < 4; op++) {
+            Area expected = new Area(ellipse);
+            QAreaImpl actual = new QAreaImpl(ellipse);
+            if (op == 0) {
+                expected.add(new Area(shapes));
+                actual.add(new QAreaImpl(shapes));
+            } else if (op == 1) {
+                expected.subtract(new Area(shapes));
+                actual.subtract(new QAreaImpl(shapes));
+            } else if (op == 2) {
+                expected.intersect(new Area(shapes));
+                actual.intersect(new QAreaImpl(shapes));
+            } else {
+                expected.exclusiveOr(new Area(shapes));
+                actual.exclusiveOr(new QAreaImpl(shapes));
+            }
+            assertSameArea("op " + op, expected, actual);
+        }
+    }
+
+    /**
+     * Areas whose bounds overlap can still be disjoint if their subpaths
+     * are in alternating rows. Then add and exclusiveOr append one area to
+     * the other without a sweep, and subtract and intersect return early.
+     */
+    @Test
+    public void testDisjointAreas() {
+        Random random = new Random(0);
+        Path2D evenRows = new Path2D.Double();
+        Path2D oddRows = new Path2D.Double();
+        Path2D touchingRows = new Path2D.Double();
+        for (int row = 0; row < 10; row++) {
+            for (int column = 0; column < 10; column++) {
+                double x = 100 * column + random.nextDouble() * 40;
+                Shape tile = new Rectangle2D.Double(x, 100 * row, 50, 40);
+                Shape ellipse = new Ellipse2D.Double(x, 100 * row + 50, 50, 40);
+                evenRows.append(tile, false);
+                oddRows.append(ellipse, false);
+                // these tiles share their top and bottom edges with the even rows
+                touchingRows.append(new Rectangle2D.Double(x + 10, 100 * row + 40, 30, 60), false);
+            }
+        }
+
+        QAreaImpl even = new QAreaImpl(evenRows);
+        QAreaImpl odd = new QAreaImpl(oddRows);
+        QAreaImpl sum = new QAreaImpl(even);
+        sum.add(odd);
+        // a sweep would interleave the rows, but concatenation doesn't
+        Path2D concatenated = new Path2D.Double(even);
+        concatenated.append(odd, false);
+        assertSameSegments("concatenated", concatenated.getPathIterator(null), sum.getPathIterator(null));
+
+        for (int op = 0; op < 4; op++) {
+            assertOpMatchesArea("odd rows, op " + op, evenRows, oddRows, op);
+            assertOpMatchesArea("touching rows, op " + op, evenRows, touchingRows, op);
+            assertOpMatchesArea("touching odd rows, op " + op, oddRows, touchingRows, op);
+
+            // the y-bands of a concatenated area are merged, so later
+            // operations still recognize what the area is disjoint from
+            Area expected = new Area(evenRows);
+            expected.add(new Area(oddRows));
+            QAreaImpl actual = new QAreaImpl(sum);
+            applyOp(op, expected, actual, touchingRows);
+            assertSameArea("sum, touching rows, op " + op, expected, actual);
+        }
+    }
+
+    /**
+     * Assert that an operation on two shapes matches Area.
+     *
+     * @param op 0 for add, 1 for subtract, 2 for intersect or 3 for exclusiveOr.
+     */
+    private static void assertOpMatchesArea(String name, Shape shape1, Shape shape2, int op) {
+        Area expected = new Area(shape1);
+        QAreaImpl actual = new QAreaImpl(shape1);
+        applyOp(op, expected, actual, shape2);
+        assertSameArea(name, expected, actual);
+    }
+
+    /**
+     * Apply the same operation to an Area and a QAreaImpl.
+     *
+     * @param op 0 for add, 1 for subtract, 2 for intersect or 3 for exclusiveOr.
+     */
+    private static void applyOp(int op, Area area, QAreaImpl qarea, Shape shape) {
+        if (op == 0) {
+            area.add(new Area(shape));
+            qarea.add(new QAreaImpl(shape));
+        } else if (op == 1) {
+            area.subtract(new Area(shape));
+            qarea.subtract(new QAreaImpl(shape));
+        } else if (op == 2) {
+            area.intersect(new Area(shape));
+            qarea.intersect(new QAreaImpl(shape));
+        } else {
+            area.exclusiveOr(new Area(shape));
+            qarea.exclusiveOr(new QAreaImpl(shape));
+        }
+    }
+
+    @Test
+    public void testUnionAll() {
+        Random random = new Random(0);
+        List<Shape> shapes = new ArrayList<>();
+        Area expected = new Area();
+        for (int a = 0; a < 300; a++) {
+            Shape shape = createRandomShapes(random, 1, 200, false);
+            shapes.add(shape);
+            expected.add(new Area(shape));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameArea("unionAll", expected, QAreaImpl.unionAll(shapes, pool));
+            assertSameArea("one shape", new Area(shapes.get(0)),
+                    QAreaImpl.unionAll(shapes.subList(0, 1), pool));
+            assertTrue(QAreaImpl.unionAll(new ArrayList<Shape>(), pool).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPack() {
+        Random random = new Random(0);
+        Shape shape = createRandomShapes(random, 200, 100, false);
+        Shape other = createRandomShapes(random, 200, 100, false);
+        QAreaImpl unpacked = new QAreaImpl(shape);
+        QAreaImpl packed = new QAreaImpl(shape);
+        packed.pack();
+        assertTrue(packed.isPacked());
+
+        assertSameSegments("path", unpacked.getPathIterator(null), packed.getPathIterator(null));
+        assertEquals(unpacked.getBounds2D(), packed.getBounds2D());
+        for (int a = 0; a < 1000; a++) {
+            double x = random.nextDouble() * 2000;
+            double y = random.nextDouble() * 2000;
+            assertEquals(unpacked.contains(x, y), packed.contains(x, y));
+            Rectangle2D r = new Rectangle2D.Double(x, y, 10, 10);
+            assertEquals(unpacked.contains(r), packed.contains(r));
+            assertEquals(unpacked.intersects(r), packed.intersects(r));
+        }
+        assertEquals(unpacked.isRectangular(), packed.isRectangular());
+        assertTrue(packed.isEqual(unpacked));
+        assertTrue(unpacked.isEqual(packed));
+        assertTrue(packed.isPacked());
+
+        // transforms that only scale and translate keep the area packed
+        AffineTransform tx = AffineTransform.getTranslateInstance(10, -20);
+        tx.scale(2, .5);
+        Area expected = new Area(shape);
+        expected.transform(tx);
+        packed.transform(tx);
+        assertTrue(packed.isPacked());
+        assertSameArea("transform", expected, packed);
+
+        // operations unpack the area
+        expected.add(new Area(other));
+        packed.add(new QAreaImpl(other));
+        assertFalse(packed.isPacked());
+        assertSameArea("add", expected, packed);
+    }
+
+    @Test
+    public void testForEachSegment() {
+        Random random = new Random(0);
+        QAreaImpl area = new QAreaImpl(createRandomShapes(random, 200, 100, false));
+        area.add(new QAreaImpl(createRandomShapes(random, 200, 100, false)));
+        AffineTransform tx = AffineTransform.getRotateInstance(.3);
+        tx.scale(2, 3);
+
+        for (int a = 0; a < 2; a++) {
+            for (AffineTransform at : new AffineTransform[] { null, tx }) {
+                String name = (area.isPacked() ? "packed" : "unpacked") + (at == null ? "" : ", transformed");
+                Path2D path = new Path2D.Double();
+                area.forEachSegment(createPathConsumer(path), at);
+                assertSameSegments(name, area.getPathIterator(at), path.getPathIterator(null));
+            }
+            area.pack();
+        }
+    }
+
+    private static QPathConsumer createPathConsumer(final Path2D path) {
+        return new QPathConsumer() {
+            @Override
+            public void moveTo(double x, double y) {
+                path.moveTo(x, y);
+            }
+
+            @Override
+            public void lineTo(double x, double y) {
+                path.lineTo(x, y);
+            }
+
+            @Override
+            public void quadTo(double cx, double cy, double x, double y) {
+                path.quadTo(cx, cy, x, y);
+            }
+
+            @Override
+            public void cubicTo(double cx0, double cy0, double cx1, double cy1, double x, double y) {
+                path.curveTo(cx0, cy0, cx1, cy1, x, y);
+            }
+
+            @Override
+            public void closePath() {
+                path.closePath();
+            }
+        };
+    }
+
+    @Test
+    public void testFromNormalized() {
+        Random random = new Random(0);
+        Path2D p1 = createRandomShapes(random, 300, 100, false);
+        Path2D p2 = createRandomShapes(random, 300, 100, false);
+        Area area1 = new Area(p1);
+        Area area2 = new Area(p2);
+        Area expected = new Area(area1);
+        expected.add(area2);
+
+        // the Area constructor reads an Area's path without sweeping it
+        QAreaImpl fromArea = new QAreaImpl(area1);
+        assertSameArea("Area constructor", area1, fromArea);
+        assertSameSegments("Area constructor", area1.getPathIterator(null), fromArea.getPathIterator(null));
+        fromArea.add(new QAreaImpl(area2));
+        assertSameArea("Area constructor, add", expected, fromArea);
+
+        QAreaImpl fromAreaPath = QAreaImpl.fromNormalized(area1.getPathIterator(null));
+        assertSameArea("Area path", area1, fromAreaPath);
+        fromAreaPath.add(QAreaImpl.fromNormalized(area2.getPathIterator(null)));
+        assertSameArea("Area path, add", expected, fromAreaPath);
+
+        QAreaImpl q1 = new QAreaImpl(p1);
+        QAreaImpl fromQAreaPath = QAreaImpl.fromNormalized(q1.getPathIterator(null));
+        assertSameSegments("QAreaImpl path", q1.getPathIterator(null), fromQAreaPath.getPathIterator(null));
+        assertTrue(fromQAreaPath.isEqual(q1));
+
+        // a path that is scaled and translated is still normalized
+        AffineTransform tx = AffineTransform.getTranslateInstance(-50, 70);
+        tx.scale(3, 2);
+        Area transformed = area1.createTransformedArea(tx);
+        assertSameArea("transformed path", transformed, QAreaImpl.fromNormalized(q1.getPathIterator(tx)));
+
+        assertTrue(QAreaImpl.fromNormalized(new Area().getPathIterator(null)).isEmpty());
+    }
+
+    /**
+     * This tests operations that resolve the winding rule of a shape in the
+     * same sweep that combines it with an area.
+     */
+    @Test
+    public void testShapeOperations() {
+        Random random = new Random(0);
+        Path2D base = createRandomShapes(random, 300, 200, false);
+        base.append(new Rectangle2D.Double(0, 0, 2000, 10), false);
+        base.append(new Rectangle2D.Double(0, 1990, 2000, 10), false);
+
+        List<Shape> shapes = new ArrayList<>();
+        for (int windingRule : new int[] { Path2D.WIND_EVEN_ODD, Path2D.WIND_NON_ZERO }) {
+            // self-intersecting stars and overlapping subpaths inside the
+            // vertical range of the area
+            Path2D stars = new Path2D.Double(windingRule);
+            stars.append(createStar(500, 500, 300, 7, 3), false);
+            stars.append(createStar(700, 600, 250, 5, 2), false);
+            Path2D curves = createRandomShapes(random, 100, 400, false);
+            curves.setWindingRule(windingRule);
+            curves.transform(new AffineTransform(.5, 0, 0, .5, 500, 500));
+            shapes.add(stars);
+            shapes.add(curves);
+
+            // a star above the area
+            Path2D above = new Path2D.Double(windingRule);
+            above.append(createStar(1000, -200, 300, 5, 2), false);
+            shapes.add(above);
+
+            // a star across the bottom of the area
+            Path2D below = new Path2D.Double(windingRule);
+            below.append(createStar(1200, 2100, 300, 7, 3), false);
+            shapes.add(below);
+
+            // a star beside (and disjoint from) the area
+            Path2D beside = new Path2D.Double(windingRule);
+            beside.append(createStar(3000, 1000, 300, 5, 2), false);
+            shapes.add(beside);
+        }
+        shapes.add(new Path2D.Double());
+
+        for (int a = 0; a < shapes.size(); a++) {
+            Shape shape = shapes.get(a);
+            for (int op = 0; op < 4; op++) {
+                for (boolean isEmpty : new boolean[] { false, true }) {
+                    String name = "shape " + a + ", op " + op + (isEmpty ? ", empty area" : "");
+                    Area expected = isEmpty ? new Area() : new Area(base);
+                    QAreaImpl actual = isEmpty ? new QAreaImpl() : new QAreaImpl(base);
+                    if (op == 0) {
+                        expected.add(new Area(shape));
+                        actual.add(shape);
+                    } else if (op == 1) {
+                        expected.subtract(new Area(shape));
+                        actual.subtract(shape);
+                    } else if (op == 2) {
+                        expected.intersect(new Area(shape));
+                        actual.intersect(shape);
+                    } else {
+                        expected.exclusiveOr(new Area(shape));
+                        actual.exclusiveOr(shape);
+                    }
+                    assertSameArea(name, expected, actual);
+                }
+            }
+        }
+    }
+
+    /**
+     * The outline of a zigzag crosses the top and bottom of a QSweepBand
+     * several times, so it is split into several runs above and below the
+     * band that have to be rejoined with the chains the sweep produces.
+     */
+    @Test
+    public void testSweepBandRuns() {
+        Path2D zigzag = new Path2D.Double();
+        zigzag.moveTo(0, 400);
+        for (int a = 0; a < 8; a++) {
+            double x = 100 * a;
+            zigzag.lineTo(x + 25, 0);
+            zigzag.quadTo(x + 50, -40, x + 75, 0);
+            zigzag.lineTo(x + 100, 400);
+        }
+        for (int a = 7; a >= 0; a--) {
+            double x = 100 * a;
+            zigzag.lineTo(x + 75, 1000);
+            zigzag.curveTo(x + 60, 1050, x + 40, 1050, x + 25, 1000);
+            zigzag.lineTo(x, 600);
+        }
+        zigzag.closePath();
+
+        Random random = new Random(0);
+        Path2D middle = createRandomShapes(random, 100, 100, false);
+        middle.transform(new AffineTransform(.4, 0, 0, .2, 0, 300));
+        middle.append(new Rectangle2D.Double(50, 300, 700, 400), false);
+
+        QSweepContext context = QSweepContext.acquire();
+        try {
+            QSweepBand band = QSweepBand.create(
+                    QAreaImpl.readCurves(new QAreaImpl(zigzag).getPathIterator(null)),
+                    QAreaImpl.readCurves(new QAreaImpl(middle).getPathIterator(null)),
+                    true, true, true, context);
+            assertTrue(band.ytop > 0 && band.ytop < 300);
+            assertTrue(band.ybot > 700 && band.ybot < 1000);
+        } finally {
+            context.release();
+        }
+
+        for (int op = 0; op < 4; op++) {
+            assertOpMatchesArea("zigzag, op " + op, zigzag, middle, op);
+            assertOpMatchesArea("middle, op " + op, middle, zigzag, op);
+        }
+    }
+
+    /**
+     * A path that hasn't been normalized can't be clipped to a QSweepBand,
+     * so the band extends over all of it and only the area is clipped.
+     */
+    @Test
+    public void testSweepBandWithRawOperand() {
+        Random random = new Random(0);
+        ExposedArrayWrapper<QCurve> area = QAreaImpl.readCurves(
+                new QAreaImpl(createRandomShapes(random, 300, 200, false)).getPathIterator(null));
+        Path2D starShape = createStar(1000, -100, 300, 7, 3);
+        ExposedArrayWrapper<QCurve> star = QAreaImpl.readCurves(starShape.getPathIterator(null));
+        QSweepContext context = QSweepContext.acquire();
+        try {
+            QSweepBand band = QSweepBand.create(area, star, true, true, false, context);
+            assertEquals(Double.NEGATIVE_INFINITY, band.ytop);
+            assertTrue(band.ybot > starShape.getBounds2D().getMaxY() && band.ybot < 2000);
+            for (int a = 0; a < band.edges.elementCount; a++) {
+                QEdge e = band.edges.elementData[a];
+                if (e.curveTag == QAreaOp.CTAG_RIGHT) {
+                    assertEquals(e.curve.y0, e.ytop);
+                    assertEquals(e.curve.y1, e.ybot);
+                }
+            }
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Return a self-intersecting star polygon that connects every
+     * {@code step}th of {@code pointCount} points on a circle.
+     */
+    private static Path2D createStar(double centerX, double centerY, double radius, int pointCount, int step) {
+        Path2D p = new Path2D.Double();
+        for (int a = 0; a < pointCount; a++) {
+            double theta = 2 * Math.PI * a * step / pointCount;
+            double x = centerX + radius * Math.cos(theta);
+            double y = centerY + radius * Math.sin(theta);
+            if (a == 0) {
+                p.moveTo(x, y);
+            } else {
+                p.lineTo(x, y);
+            }
+        }
+        p.closePath();
+        return p;
+    }
+
+    /**
+     * Rectangles, ellipses and round rectangles skip the winding sweep, so
+     * their curves have to be exactly what the sweep would produce.
+     */
+    @Test
+    public void testConvexShapes() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Rectangle2D.Double(10, 20, 300, 150));
+        shapes.add(new Rectangle2D.Double(10, 20, 0, 150));
+        shapes.add(new Rectangle2D.Double(10, 20, 300, 0));
+        shapes.add(new Rectangle2D.Float(.1f, .2f, 1e-3f, 1e-3f));
+        shapes.add(new Ellipse2D.Double(10, 20, 300, 150));
+        shapes.add(new Ellipse2D.Double(-50, -50, 100, 100));
+        shapes.add(new Ellipse2D.Double(10, 20, 0, 150));
+        shapes.add(new Ellipse2D.Double(10, 20, .001, .002));
+        shapes.add(new RoundRectangle2D.Double(10, 20, 300, 150, 40, 30));
+        // arcs larger than the sides
+        shapes.add(new RoundRectangle2D.Double(10, 20, 300, 150, 500, 30));
+        shapes.add(new RoundRectangle2D.Double(10, 20, 300, 150, 40, 400));
+        shapes.add(new RoundRectangle2D.Double(10, 20, 100, 100, 1000, 1000));
+        shapes.add(new RoundRectangle2D.Double(10, 20, 300, 150, 0, 0));
+        // zero width or height
+        shapes.add(new RoundRectangle2D.Double(10, 20, 0, 150, 40, 30));
+        shapes.add(new RoundRectangle2D.Double(10, 20, 300, 0, 40, 30));
+
+        Random random = new Random(0);
+        Path2D other = createRandomShapes(random, 50, 100, false);
+        other.transform(new AffineTransform(.15, 0, 0, .1, 0, 0));
+        for (int a = 0; a < shapes.size(); a++) {
+            Shape shape = shapes.get(a);
+            assertSameSegments("shape " + a, new Area(shape).getPathIterator(null),
+                    new QAreaImpl(shape).getPathIterator(null));
+            for (int op = 0; op < 4; op++) {
+                Area expected = new Area(shape);
+                QAreaImpl actual = new QAreaImpl(shape);
+                if (op == 0) {
+                    expected.add(new Area(other));
+                    actual.add(new QAreaImpl(other));
+                } else if (op == 1) {
+                    expected.subtract(new Area(other));
+                    actual.subtract(new QAreaImpl(other));
+                } else if (op == 2) {
+                    expected.intersect(new Area(other));
+                    actual.intersect(new QAreaImpl(other));
+                } else {
+                    expected.exclusiveOr(new Area(other));
+                    actual.exclusiveOr(new QAreaImpl(other));
+                }
+                assertSameArea("shape " + a + ", op " + op, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testDegreeReduction() {
+        // quadratic and cubic curves whose control points are on a line
+        Path2D lines = new Path2D.Double();
+        lines.moveTo(0, 0);
+        lines.quadTo(50, 25, 100, 50);
+        lines.curveTo(100, 80, 100, 120, 100, 200);
+        lines.curveTo(70, 170, 30, 130, 0, 100);
+        lines.closePath();
+        QAreaImpl linesArea = new QAreaImpl(lines);
+        assertSameArea("lines", new Area(lines), linesArea);
+        int[] counts = getSegmentCounts(linesArea);
+        assertEquals(0, counts[PathIterator.SEG_QUADTO]);
+        assertEquals(0, counts[PathIterator.SEG_CUBICTO]);
+        assertEquals(3, linesArea.getDegreeReductionCount());
+
+        // cubic curves that are degree-elevated quadratic curves, like
+        // converted TrueType outlines
+        Path2D quads = new Path2D.Double();
+        quads.moveTo(0, 0);
+        appendElevatedQuad(quads, 0, 0, 150, 100, 0, 200);
+        appendElevatedQuad(quads, 0, 200, 100, 300, 200, 200);
+        quads.lineTo(200, 0);
+        quads.closePath();
+        QAreaImpl quadsArea = new QAreaImpl(quads);
+        assertSameArea("quads", new Area(quads), quadsArea);
+        counts = getSegmentCounts(quadsArea);
+        assertTrue(counts[PathIterator.SEG_QUADTO] > 0);
+        assertEquals(0, counts[PathIterator.SEG_CUBICTO]);
+        assertEquals(2, quadsArea.getDegreeReductionCount());
+
+        // a real cubic curve is not reduced
+        Path2D cubic = new Path2D.Double();
+        cubic.moveTo(0, 0);
+        cubic.curveTo(150, 50, -50, 150, 100, 200);
+        cubic.lineTo(200, 100);
+        cubic.closePath();
+        QAreaImpl cubicArea = new QAreaImpl(cubic);
+        assertSameArea("cubic", new Area(cubic), cubicArea);
+        assertTrue(getSegmentCounts(cubicArea)[PathIterator.SEG_CUBICTO] > 0);
+        assertEquals(0, cubicArea.getDegreeReductionCount());
+
+        Area expected = new Area(lines);
+        expected.add(new Area(quads));
+        expected.exclusiveOr(new Area(cubic));
+        linesArea.add(quadsArea);
+        linesArea.exclusiveOr(cubicArea);
+        assertSameArea("combined", expected, linesArea);
+
+        // each area reports its own reductions, including a large path
+        // that is read on several threads
+        assertEquals(3, linesArea.getDegreeReductionCount());
+        assertEquals(3, new QAreaImpl(linesArea).getDegreeReductionCount());
+        Path2D large = new Path2D.Double();
+        for (int a = 0; a < 6000; a++) {
+            large.append(AffineTransform.getTranslateInstance(300 * (a % 100), 300 * (a / 100))
+                    .createTransformedShape(a % 2 == 0 ? lines : quads), false);
+        }
+        assertTrue(getSegmentCount(large) >= QPathSnapshot.MIN_PARALLEL_SEGMENT_COUNT);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(3000 * 3 + 3000 * 2,
+                    new QAreaImpl(large, getSegmentCount(large), pool).getDegreeReductionCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Append the cubic curve that describes the same curve as a quadratic curve.
+     */
+    private static void appendElevatedQuad(Path2D path, double x0, double y0, double cx, double cy, double x1,
+                                           double y1) {
+        path.curveTo(x0 + 2 * (cx - x0) / 3, y0 + 2 * (cy - y0) / 3,
+                x1 + 2 * (cx - x1) / 3, y1 + 2 * (cy - y1) / 3, x1, y1);
+    }
+
+    /**
+     * Return the number of segments of each type in a shape's path.
+     */
+    private static int[] getSegmentCounts(Shape shape) {
+        int[] counts = new int[5];
+        double[] coords = new double[6];
+        PathIterator pi = shape.getPathIterator(null);
+        while (!pi.isDone()) {
+            counts[pi.currentSegment(coords)]++;
+            pi.next();
+        }
+        return counts;
+    }
+
+    @Test
+    public void testCompact() {
+        // a polygon with collinear vertices on every side
+        Path2D polygon = new Path2D.Double();
+        polygon.moveTo(0, 0);
+        for (int a = 1; a <= 10; a++) {
+            polygon.lineTo(10 * a, 3 * a);
+        }
+        for (int a = 1; a <= 10; a++) {
+            polygon.lineTo(100 - 7 * a, 30 + 11 * a);
+        }
+        polygon.closePath();
+        QAreaImpl area = new QAreaImpl(polygon);
+        int segmentCount = getSegmentCounts(area)[PathIterator.SEG_LINETO];
+        area.compact();
+        assertTrue(getSegmentCounts(area)[PathIterator.SEG_LINETO] < segmentCount);
+        assertSameArea("polygon", new Area(polygon), area);
+
+        // many operations, with and without compacting each result
+        Random random = new Random(0);
+        Area expected = new Area();
+        QAreaImpl compacted = new QAreaImpl();
+        QAreaImpl uncompacted = new QAreaImpl();
+        for (int a = 0; a < 40; a++) {
+            Shape shape = createRandomShapes(random, 10, 600, a % 2 == 0);
+            QAreaOp.CAGOp op1 = a % 3 == 2 ? new QAreaOp.SubOp() : new QAreaOp.AddOp();
+            QAreaOp.CAGOp op2 = a % 3 == 2 ? new QAreaOp.SubOp() : new QAreaOp.AddOp();
+            op2.setCompactResult(false);
+            if (a % 3 == 2) {
+                expected.subtract(new Area(shape));
+            } else {
+                expected.add(new Area(shape));
+            }
+            compacted = calculate(op1, compacted, new QAreaImpl(shape));
+            uncompacted = calculate(op2, uncompacted, new QAreaImpl(shape));
+        }
+        assertSameArea("compacted", expected, compacted);
+        assertSameArea("uncompacted", expected, uncompacted);
+        assertTrue(getSegmentCounts(compacted)[PathIterator.SEG_LINETO] <
+                getSegmentCounts(uncompacted)[PathIterator.SEG_LINETO]);
+    }
+
+    @Test
+    public void testParallelSweep() {
+        Random random = new Random(0);
+        Path2D p1 = createRandomShapes(random, 1500, 30, false);
+        Path2D p2 = createRandomShapes(random, 1500, 30, false);
+        assertTrue(getSegmentCount(p1) + getSegmentCount(p2) >= QParallelSweep.MIN_EDGE_COUNT);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertOptionMatchesArea("parallel sweep", p1, p2,
+                    (op, b) -> op.setForkJoinPool(b ? pool : null),
+                    (off, on) -> off.workerCount == 0 && on.workerCount > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A large path is split into curves on several threads, and each
+     * thread has to resume open subpaths where the previous thread stopped.
+     */
+    @Test
+    public void testLargeShapeWithPool() {
+        Random random = new Random(0);
+        Path2D path = new Path2D.Double();
+        for (int a = 0; a < 3000; a++) {
+            double x = random.nextDouble() * 2000;
+            double y = random.nextDouble() * 2000;
+            path.moveTo(x, y);
+            for (int b = 0; b < 6; b++) {
+                int type = random.nextInt(3);
+                if (type == 0) {
+                    path.lineTo(x + random.nextDouble() * 60, y + random.nextDouble() * 60);
+                } else if (type == 1) {
+                    path.quadTo(x + random.nextDouble() * 60, y + random.nextDouble() * 60,
+                            x + random.nextDouble() * 60, y + random.nextDouble() * 60);
+                } else {
+                    path.curveTo(x + random.nextDouble() * 60, y + random.nextDouble() * 60,
+                            x + random.nextDouble() * 60, y + random.nextDouble() * 60,
+                            x + random.nextDouble() * 60, y + random.nextDouble() * 60);
+                }
+            }
+            // every other subpath is left open
+            if (a % 2 == 0) {
+                path.closePath();
+            }
+        }
+        int segmentCount = getSegmentCount(path);
+        assertTrue(segmentCount > QPathSnapshot.MIN_PARALLEL_SEGMENT_COUNT);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTrue(QPathSnapshot.isParallel(segmentCount, pool));
+            ExposedArrayWrapper<QCurve> expected = QAreaImpl.readCurves(path.getPathIterator(null));
+            ExposedArrayWrapper<QCurve> actual = QPathSnapshot.create(path.getPathIterator(null), segmentCount)
+                    .readCurves(pool, null);
+            assertSameSegments("curves", QAreaImpl.getPathIterator(expected, null),
+                    QAreaImpl.getPathIterator(actual, null));
+            assertSameArea("large shape", new Area(path), new QAreaImpl(path, segmentCount, pool));
+
+            // a small estimate reads the path on the calling thread
+            assertFalse(QPathSnapshot.isParallel(100, pool));
+            assertSameArea("small estimate", new Area(path), new QAreaImpl(path, 100, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSplitAtCrossings() {
+        for (int seed = 0; seed < 4; seed++) {
+            Random random = new Random(seed);
+            Path2D p1 = createRandomShapes(random, 300, 100, false);
+            Path2D p2 = createRandomShapes(random, 300, 100, false);
+            assertOptionMatchesArea("split, seed " + seed, p1, p2, QAreaOp::setSplitAtCrossings,
+                    (off, on) -> off.splitEdgeCount == 0 && on.splitEdgeCount > 0);
+        }
+    }
+
+    @Test
+    public void testPolygonSweep() {
+        Random random = new Random(0);
+        Path2D p1 = createRandomShapes(random, 1000, 60, true);
+        Path2D p2 = createRandomShapes(random, 1000, 60, true);
+        assertOptionMatchesArea("polygon sweep", p1, p2, QAreaOp::setPolygonSweep,
+                (off, on) -> !off.isPolygonSwept && on.isPolygonSwept);
+
+        // the polygon sweep produces exactly the same lines as the generic
+        // sweep, including with the options that change which edges it sweeps
+        QAreaImpl q1 = new QAreaImpl(p1);
+        QAreaImpl q2 = new QAreaImpl(p2);
+        assertTrue(getSegmentCount(q1) + getSegmentCount(q2) >= QParallelSweep.MIN_EDGE_COUNT);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int type = 0; type < 4; type++) {
+                for (int options = 0; options < 8; options++) {
+                    QAreaImpl[] results = new QAreaImpl[2];
+                    for (boolean b : new boolean[] { false, true }) {
+                        Trace trace = new Trace();
+                        QAreaOp op = createTracedOp(type, trace);
+                        op.setPolygonSweep(b);
+                        op.setAdaptiveAxis(false);
+                        op.setSplitAtCrossings((options & 1) != 0);
+                        ((QAreaOp.CAGOp) op).setMergeSharedEdges((options & 2) != 0);
+                        op.setForkJoinPool((options & 4) != 0 ? pool : null);
+                        results[b ? 1 : 0] = calculate(op, q1, q2);
+                        assertEquals(b, trace.isPolygonSwept);
+                        assertEquals((options & 4) != 0, trace.workerCount > 1);
+                    }
+                    assertSameSegments("op " + type + ", options " + options,
+                            results[0].getPathIterator(null), results[1].getPathIterator(null));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // a curve in either operand uses the generic sweep
+        Path2D c2 = new Path2D.Double(p2);
+        c2.append(new Ellipse2D.Double(10, 10, 50, 30), false);
+        Trace trace = new Trace();
+        calculate(createTracedOp(0, trace), q1, new QAreaImpl(c2));
+        assertFalse(trace.isPolygonSwept);
+    }
+
+    @Test
+    public void testRadixSort() {
+        Random random = new Random(0);
+        Path2D p1 = createRandomShapes(random, 400, 100, false);
+        Path2D p2 = createRandomShapes(random, 400, 100, true);
+        assertTrue(getSegmentCount(p1) + getSegmentCount(p2) >= QEdgeSort.MIN_RADIX_SORT_SIZE);
+        assertOptionMatchesArea("radix sort", p1, p2, QAreaOp::setRadixSort,
+                (off, on) -> !off.isRadixSorted && on.isRadixSorted);
+    }
+
+    @Test
+    public void testAdaptiveAxis() {
+        // polygons in a wide, short row are cheaper to sweep along the x axis
+        Random random = new Random(0);
+        Path2D p1 = createRow(random, 0, true);
+        Path2D p2 = createRow(random, 10, true);
+        assertTrue(QSweepAxis.isTransposeCheaper(QAreaImpl.readCurves(new QAreaImpl(p1).getPathIterator(null)),
+                QAreaImpl.readCurves(new QAreaImpl(p2).getPathIterator(null)), true));
+        // transposed edges span the width of the rows instead of their height
+        assertOptionMatchesArea("adaptive axis", p1, p2, QAreaOp::setAdaptiveAxis,
+                (off, on) -> off.ymax < 100 && on.ymax > 1000);
+
+        // but curves are not transposed, because that divides them differently
+        Path2D c1 = createRow(random, 0, false);
+        Path2D c2 = createRow(random, 10, false);
+        assertFalse(QSweepAxis.isTransposeCheaper(QAreaImpl.readCurves(new QAreaImpl(c1).getPathIterator(null)),
+                QAreaImpl.readCurves(new QAreaImpl(c2).getPathIterator(null)), true));
+    }
+
+    /**
+     * Create a wide, short row of 100 random shapes.
+     *
+     * @param offset the x value of the first shape.
+     */
+    private static Path2D createRow(Random random, double offset, boolean polygons) {
+        Path2D p = new Path2D.Double();
+        for (int a = 0; a < 100; a++) {
+            Path2D shape = createRandomShapes(random, 1, 15, polygons);
+            Rectangle2D bounds = shape.getBounds2D();
+            double x = 20 * a + offset;
+            double y = random.nextDouble() * 5;
+            shape.transform(AffineTransform.getTranslateInstance(x - bounds.getX(), y - bounds.getY()));
+            p.append(shape, false);
+        }
+        return p;
+    }
+
+    @Test
+    public void testMergeSharedEdges() {
+        // a checkerboard of tiles and ellipses, where every tile shares its
+        // edges with the other operand and some tiles and ellipses appear in both
+        Random random = new Random(0);
+        Path2D p1 = new Path2D.Double();
+        Path2D p2 = new Path2D.Double();
+        for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 20; column++) {
+                Shape tile = new Rectangle2D.Double(50 * column, 50 * row, 50, 50);
+                ((row + column) % 2 == 0 ? p1 : p2).append(tile, false);
+                if (random.nextInt(4) == 0) {
+                    ((row + column) % 2 == 0 ? p2 : p1).append(tile, false);
+                }
+                if (random.nextInt(4) == 0) {
+                    Shape ellipse = new Ellipse2D.Double(50 * column + 10, 50 * row + 10, 60, 40);
+                    p1.append(ellipse, false);
+                    p2.append(ellipse, false);
+                }
+            }
+        }
+        assertOptionMatchesArea("merge shared edges", p1, p2,
+                (op, b) -> ((QAreaOp.CAGOp) op).setMergeSharedEdges(b),
+                (off, on) -> off.sharedEdgeCount == 0 && on.sharedEdgeCount > 0);
+    }
+
+    @Test
+    public void testCullSubpaths() {
+        // the operands only partly overlap, and tiles along the edges of
+        // their bounds touch the other operand's bounds without entering them
+        Random random = new Random(0);
+        Path2D p1 = createRandomShapes(random, 300, 100, false);
+        Path2D p2 = createRandomShapes(random, 300, 100, false);
+        p2.transform(AffineTransform.getTranslateInstance(1200, 700));
+        Rectangle2D bounds1 = p1.getBounds2D();
+        Rectangle2D bounds2 = p2.getBounds2D();
+        for (int a = 0; a < 10; a++) {
+            double y = bounds2.getY() + 40 * a;
+            p1.append(new Rectangle2D.Double(bounds2.getX() - 20, y, 20, 20), false);
+            p2.append(new Rectangle2D.Double(bounds1.getMaxX(), y + 20, 20, 20), false);
+        }
+
+        ExposedArrayWrapper<QCurve> left = QAreaImpl.readCurves(new QAreaImpl(p1).getPathIterator(null));
+        ExposedArrayWrapper<QCurve> right = QAreaImpl.readCurves(new QAreaImpl(p2).getPathIterator(null));
+        for (boolean keep : new boolean[] { false, true }) {
+            QSubpathCulling culling = QSubpathCulling.create(left, right, keep, keep, true);
+            assertTrue(culling.left.elementCount < left.elementCount);
+            assertTrue(culling.right.elementCount < right.elementCount);
+        }
+        assertOptionMatchesArea("cull subpaths", p1, p2,
+                (op, b) -> ((QAreaOp.CAGOp) op).setCullSubpaths(b),
+                (off, on) -> on.edgeCount < off.edgeCount);
+    }
+
+    /**
+     * QEdge orders edges that are apart in a row by the x values they cover
+     * in that row. That has to give the same order and the same end of the
+     * row as comparing their curves, or the sweep's rows (and the crossings
+     * estimated in them) would move.
+     */
+    @Test
+    public void testRowKeys() {
+        Random random = new Random(0);
+        ExposedArrayWrapper<QCurve> curves = QAreaImpl.readCurves(
+                createRandomShapes(random, 200, 300, false).getPathIterator(null));
+        int comparisonCount = 0;
+        for (int i = 0; i < curves.elementCount; i++) {
+            QCurve a = curves.elementData[i];
+            for (int j = i + 1; j < curves.elementCount; j++) {
+                QCurve b = curves.elementData[j];
+                double y0 = Math.max(a.y0, b.y0);
+                double y1 = Math.min(a.y1, b.y1);
+                if (a.order == 0 || b.order == 0 || y0 >= y1 || a.xmax <= b.xmin || b.xmax <= a.xmin) {
+                    continue;
+                }
+                // a row in the middle of the y values both curves cover
+                double top = y0 + (y1 - y0) * random.nextDouble() / 2;
+                double[] expectedRange = { top, y1 };
+                int expected = a.compareTo(b, expectedRange);
+                double[] actualRange = { top, y1 };
+                QEdge edge = new QEdge(a, QAreaOp.CTAG_LEFT);
+                int actual = edge.compareTo(new QEdge(b, QAreaOp.CTAG_LEFT), actualRange);
+                assertEquals(a + " and " + b, expected, actual);
+                assertEquals(a + " and " + b, expectedRange[1], actualRange[1], 0);
+                comparisonCount++;
+            }
+        }
+        assertTrue(comparisonCount > 1000);
+    }
+
+    /**
+     * QCurve.compareCurves skips its subdivision when two curves are apart,
+     * so that has to be exactly when the subdivision can't find an
+     * intersection (otherwise the sweep's crossings would move).
+     */
+    @Test
+    public void testApartCurves() {
+        Random random = new Random(0);
+        ExposedArrayWrapper<QCurve> curves = QAreaImpl.readCurves(
+                createRandomShapes(random, 400, 200, false).getPathIterator(null));
+        int apartCount = 0;
+        for (int i = 0; i < curves.elementCount; i++) {
+            QCurve a = curves.elementData[i];
+            for (int j = i + 1; j < curves.elementCount; j++) {
+                QCurve b = curves.elementData[j];
+                double y0 = Math.max(a.y0, b.y0);
+                double y1 = Math.min(a.y1, b.y1);
+                if (a.order == 0 || b.order == 0 || y0 >= y1 || a.xmax <= b.xmin || b.xmax <= a.xmin) {
+                    continue;
+                }
+                double s0 = a.TforY(y0);
+                double s1 = a.TforY(y1);
+                double t0 = b.TforY(y0);
+                double t1 = b.TforY(y1);
+                if (QCurveIntersections.isApart(a, s0, s1, b, t0, t1)) {
+                    apartCount++;
+                    double[] yrange = { y0, y1 };
+                    assertFalse(a + " and " + b, a.findIntersect(b, yrange, y1 * 1E-14, 0, 0,
+                            s0, a.XforT(s0), a.YforT(s0), s1, a.XforT(s1), a.YforT(s1),
+                            t0, b.XforT(t0), b.YforT(t0), t1, b.XforT(t1), b.YforT(t1)));
+                }
+            }
+        }
+        assertTrue(apartCount > 0);
+    }
+
+    /**
+     * What a QAreaOp did during one operation.
+     */
+    private static class Trace {
+        /**
+         * The number of workers a parallel sweep created.
+         */
+        int workerCount;
+
+        /**
+         * The number of edges passed to sweepRows on the calling thread.
+         */
+        int edgeCount;
+
+        /**
+         * The number of those edges that were split where they cross other edges.
+         */
+        int splitEdgeCount;
+
+        /**
+         * The number of those edges that belong to both operands.
+         */
+        int sharedEdgeCount;
+
+        /**
+         * The largest y value of those edges.
+         */
+        double ymax = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Whether those edges were sorted with a radix sort.
+         */
+        boolean isRadixSorted;
+
+        /**
+         * Whether the edges were swept by a QPolygonSweep (on the calling
+         * thread or by workers).
+         */
+        boolean isPolygonSwept;
+
+        void recordWorker(QAreaOp op) {
+            workerCount++;
+            if (op.polygonal) {
+                isPolygonSwept = true;
+            }
+        }
+
+        void record(QAreaOp op, ExposedArrayWrapper<QEdge> edges) {
+            edgeCount += edges.elementCount;
+            boolean isSorted = true;
+            for (int a = 0; a < edges.elementCount; a++) {
+                QEdge e = edges.elementData[a];
+                if (e.splitAtCrossings) {
+                    splitEdgeCount++;
+                }
+                if (e.curveTag == QAreaOp.CTAG_BOTH) {
+                    sharedEdgeCount++;
+                }
+                ymax = Math.max(ymax, e.ybot);
+                if (a > 0 && edges.elementData[a - 1].compareTo(e) > 0) {
+                    isSorted = false;
+                }
+            }
+            if (op.isRadixSort() && edges.elementCount >= QEdgeSort.MIN_RADIX_SORT_SIZE && !isSorted) {
+                isRadixSorted = true;
+            }
+            if (op.polygonal) {
+                isPolygonSwept = true;
+            }
+        }
+    }
+
+    /**
+     * Return an op of the given type that records what it does in a trace.
+     *
+     * @param type 0 for add, 1 for subtract, 2 for intersect or 3 for exclusiveOr.
+     */
+    private static QAreaOp createTracedOp(int type, Trace trace) {
+        if (type == 0) {
+            return new QAreaOp.AddOp() {
+                @Override
+                QAreaOp createWorker() {
+                    trace.recordWorker(this);
+                    return super.createWorker();
+                }
+
+                @Override
+                void sweepRows(ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+                               QParallelSweep.Rows rows, QSweepContext context) {
+                    trace.record(this, edges);
+                    super.sweepRows(edges, ytop, ybot, rows, context);
+                }
+            };
+        } else if (type == 1) {
+            return new QAreaOp.SubOp() {
+                @Override
+                QAreaOp createWorker() {
+                    trace.recordWorker(this);
+                    return super.createWorker();
+                }
+
+                @Override
+                void sweepRows(ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+                               QParallelSweep.Rows rows, QSweepContext context) {
+                    trace.record(this, edges);
+                    super.sweepRows(edges, ytop, ybot, rows, context);
+                }
+            };
+        } else if (type == 2) {
+            return new QAreaOp.IntOp() {
+                @Override
+                QAreaOp createWorker() {
+                    trace.recordWorker(this);
+                    return super.createWorker();
+                }
+
+                @Override
+                void sweepRows(ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+                               QParallelSweep.Rows rows, QSweepContext context) {
+                    trace.record(this, edges);
+                    super.sweepRows(edges, ytop, ybot, rows, context);
+                }
+            };
+        }
+        return new QAreaOp.XorOp() {
+            @Override
+            QAreaOp createWorker() {
+                trace.recordWorker(this);
+                return super.createWorker();
+            }
+
+            @Override
+            void sweepRows(ExposedArrayWrapper<QEdge> edges, double ytop, double ybot,
+                           QParallelSweep.Rows rows, QSweepContext context) {
+                trace.record(this, edges);
+                super.sweepRows(edges, ytop, ybot, rows, context);
+            }
+        };
+    }
+
+    /**
+     * Assert that operations on two shapes match Area whether an option of
+     * QAreaOp is on or off, and that the option changed what the op did.
+     *
+     * @param option a function that turns the option of an op on or off.
+     * @param isUsed a function that receives what an op did with the option
+     *               off and on, and returns true if the option was used.
+     */
+    private static void assertOptionMatchesArea(String name, Shape shape1, Shape shape2,
+                                                BiConsumer<QAreaOp, Boolean> option,
+                                                BiPredicate<Trace, Trace> isUsed) {
+        QAreaImpl q1 = new QAreaImpl(shape1);
+        QAreaImpl q2 = new QAreaImpl(shape2);
+        for (int type = 0; type < 4; type++) {
+            Area expected = new Area(shape1);
+            if (type == 0) {
+                expected.add(new Area(shape2));
+            } else if (type == 1) {
+                expected.subtract(new Area(shape2));
+            } else if (type == 2) {
+                expected.intersect(new Area(shape2));
+            } else {
+                expected.exclusiveOr(new Area(shape2));
+            }
+            Trace[] traces = new Trace[2];
+            for (boolean b : new boolean[] { false, true }) {
+                Trace trace = traces[b ? 1 : 0] = new Trace();
+                QAreaOp op = createTracedOp(type, trace);
+                option.accept(op, b);
+                assertSameArea(name + " " + b + ", op " + type, expected, calculate(op, q1, q2));
+            }
+            assertTrue(name + " wasn't used, op " + type, isUsed.test(traces[0], traces[1]));
+        }
+    }
+
+    /**
+     * Return the number of segments in a shape's path, excluding SEG_MOVETO
+     * and SEG_CLOSE segments.
+     */
+    private static int getSegmentCount(Shape shape) {
+        int[] counts = getSegmentCounts(shape);
+        return counts[PathIterator.SEG_LINETO] + counts[PathIterator.SEG_QUADTO] + counts[PathIterator.SEG_CUBICTO];
+    }
+
+    /**
+     * Return the result of an operation that may have options that
+     * QAreaImpl doesn't expose.
+     */
+    static QAreaImpl calculate(QAreaOp op, QAreaImpl left, QAreaImpl right) {
+        ExposedArrayWrapper<QCurve> result = op.calculate(QAreaImpl.readCurves(left.getPathIterator(null)),
+                QAreaImpl.readCurves(right.getPathIterator(null)));
+        return QAreaImpl.fromNormalized(QAreaImpl.getPathIterator(result, null));
+    }
+
+    /**
+     * Assert that two paths have exactly the same segments.
+     */
+    static void assertSameSegments(String name, PathIterator expected, PathIterator actual) {
+        double[] expectedCoords = new double[6];
+        double[] actualCoords = new double[6];
+        int index = 0;
+        while (!expected.isDone()) {
+            assertFalse(name + " ended early at segment " + index, actual.isDone());
+            int type = expected.currentSegment(expectedCoords);
+            assertEquals(name + " segment " + index, type, actual.currentSegment(actualCoords));
+            int coordCount = type == PathIterator.SEG_CLOSE ? 0 :
+                    type == PathIterator.SEG_CUBICTO ? 6 : type == PathIterator.SEG_QUADTO ? 4 : 2;
+            for (int a = 0; a < coordCount; a++) {
+                assertEquals(name + " segment " + index, expectedCoords[a], actualCoords[a], 0);
+            }
+            expected.next();
+            actual.next();
+            index++;
+        }
+        assertTrue(name + " has extra segments", actual.isDone());
+    }
+
+    /**
+     * Return many random shapes in a 2000x2000 field appended into one path.
+     *
+     * @param polygons if true then only rectangles and polygons are created,
+     *                 otherwise ellipses and shapes made of quadratic and
+     *                 cubic curves are also created.
+     */
+    static Path2D createRandomShapes(Random random, int shapeCount, double size, boolean polygons) {
+        Path2D p = new Path2D.Double();
+        for (int a = 0; a < shapeCount; a++) {
+            int type = polygons ? 2 * random.nextInt(2) : random.nextInt(5);
+            p.append(createRandomShape(random, type, size), false);
+        }
+        return p;
+    }
+
+    private static Shape createRandomShape(Random random, int type, double size) {
+        double x = random.nextDouble() * 2000;
+        double y = random.nextDouble() * 2000;
+        double w = 2 + random.nextDouble() * size;
+        double h = 2 + random.nextDouble() * size;
+        if (type == 0) {
+            return new Rectangle2D.Double(x, y, w, h);
+        } else if (type == 1) {
+            return new Ellipse2D.Double(x, y, w, h);
+        }
+        Path2D p = new Path2D.Double();
+        p.moveTo(x, y);
+        if (type == 2) {
+            int pointCount = 3 + random.nextInt(5);
+            for (int a = 1; a < pointCount; a++) {
+                p.lineTo(x + random.nextDouble() * w, y + random.nextDouble() * h);
+            }
+        } else {
+            int segmentCount = 2 + random.nextInt(3);
+            for (int a = 0; a < segmentCount; a++) {
+                if (type == 3) {
+                    p.quadTo(x + random.nextDouble() * w, y + random.nextDouble() * h,
+                            x + random.nextDouble() * w, y + random.nextDouble() * h);
+                } else {
+                    p.curveTo(x + random.nextDouble() * w, y + random.nextDouble() * h,
+                            x + random.nextDouble() * w, y + random.nextDouble() * h,
+                            x + random.nextDouble() * w, y + random.nextDouble() * h);
+                }
+            }
+        }
+        p.closePath();
+        return p;
+    }
+
+    /**
+     * Return the signed area of a shape (which is positive for clockwise
+     * subpaths).
+     */
+    static double getArea(Shape shape) {
+        double sum = 0;
+        double[] coords = new double[6];
+        double moveX = 0, moveY = 0, lastX = 0, lastY = 0;
+        PathIterator pi = shape.getPathIterator(null, FLATNESS);
+        while (!pi.isDone()) {
+            int type = pi.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO) {
+                moveX = lastX = coords[0];
+                moveY = lastY = coords[1];
+            } else if (type == PathIterator.SEG_LINETO) {
+                sum += lastX * coords[1] - coords[0] * lastY;
+                lastX = coords[0];
+                lastY = coords[1];
+            } else if (type == PathIterator.SEG_CLOSE) {
+                sum += lastX * moveY - moveX * lastY;
+                lastX = moveX;
+                lastY = moveY;
+            }
+            pi.next();
+        }
+        return sum / 2;
+    }
+
+    /**
+     * Assert that a shape has the same area and bounds as an Area.
+     * <p>
+     * Area finds the crossings of two curves less precisely than QAreaImpl
+     * (within a few millionths of a pixel), so bounds that end at a
+     * crossing may differ by that much.
+     * </p>
+     */
+    static void assertSameArea(String name, Area expected, Shape actual) {
+        double tolerance = .000001 * Math.max(1, Math.abs(getArea(expected)));
+        assertEquals(name + " area", getArea(expected), getArea(actual), tolerance);
+        Rectangle2D expectedBounds = expected.getBounds2D();
+        Rectangle2D actualBounds = actual.getBounds2D();
+        assertEquals(name + " bounds", expectedBounds.getMinX(), actualBounds.getMinX(), BOUNDS_TOLERANCE);
+        assertEquals(name + " bounds", expectedBounds.getMinY(), actualBounds.getMinY(), BOUNDS_TOLERANCE);
+        assertEquals(name + " bounds", expectedBounds.getMaxX(), actualBounds.getMaxX(), BOUNDS_TOLERANCE);
+        assertEquals(name + " bounds", expectedBounds.getMaxY(), actualBounds.getMaxY(), BOUNDS_TOLERANCE);
+    }
+}